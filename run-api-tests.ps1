@@ -133,6 +133,26 @@ function Register-And-Login {
   }
 }
 
+# 检查搜索结果 (PageResult) 中是否出现某个 recipeId
+function Check-SearchHit {
+  param(
+    [object]$Result,
+    [long]$RecipeId,
+    [bool]$Expected,
+    [string]$Note
+  )
+
+  $found = $false
+  if ($null -ne $Result -and $null -ne $Result.items) {
+    $found = @($Result.items | Where-Object { [long]$_.recipeId -eq $RecipeId }).Count -gt 0
+  }
+  if ($found -eq $Expected) {
+    Record-Pass "recipe $RecipeId found=$found $Note"
+  } else {
+    Record-Fail "recipe $RecipeId found=$found, expected $Expected $Note"
+  }
+}
+
 # ------------------------------------------------------------
 # 0) Basic connectivity
 # ------------------------------------------------------------
@@ -175,23 +195,60 @@ Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/search?page=1&size=5" -Ok @(2
 
 Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/closest-calorie-pair" -Ok @(200) | Out-Null
 Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/top3-complex" -Ok @(200) | Out-Null
+Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/top-complex?k=5" -Ok @(200) | Out-Null
+Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/top-complex?k=0" -Ok @() -ExpectFail @(400) -Note "(k must be positive)" | Out-Null
+
+# facets: 单独查询，以及随搜索结果一起返回
+Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/search/facets" -Ok @(200) | Out-Null
+$withFacets = Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/search?page=1&size=5&facets=true" -Ok @(200) -Note "(facets=true)"
+if ($null -ne $withFacets -and $null -eq $withFacets.facets) {
+  Record-Fail "GET /recipes/search?facets=true returned no facets"
+}
+
+# cursor 分页：第一页的 nextCursor 继续取下一页
+$firstPage = Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/search/cursor?size=5" -Ok @(200) -Note "(first page)"
+if ($null -ne $firstPage -and $firstPage.nextCursor) {
+  $cursor = [uri]::EscapeDataString($firstPage.nextCursor)
+  Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/search/cursor?size=5&cursor=$cursor" -Ok @(200) -Note "(next page)" | Out-Null
+}
+
+Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/search/ingredients?ingredient=salt&ingredient=water&all=false&page=1&size=5" -Ok @(200) | Out-Null
+Invoke-CurlJson -Method POST -Url "$BaseUrl/recipes/search/nutrition?page=1&size=5" -Body @{
+  calories = @{ min = 100.0; max = 500.0 }
+} -Ok @(200) | Out-Null
+
+# batch: 重复的 id 按请求顺序各返回一条
+$batch = Invoke-CurlJson -Method POST -Url "$BaseUrl/recipes/batch" -Body @($DemoRecipeId, $DemoRecipeId) -Ok @(200)
+if ($null -ne $batch -and @($batch).Count -ne 2) {
+  Record-Fail "POST /recipes/batch returned $(@($batch).Count) recipes, expected 2"
+}
+
+Invoke-CurlJson -Method GET -Url "$BaseUrl/recipes/cache/stats" -Ok @(200) | Out-Null
 
 # ------------------------------------------------------------
 # 4) Recipe: create -> patch times -> delete
 # ------------------------------------------------------------
 Section "4) Recipe - create/patch/delete"
 $rid = $null
+# 唯一的配料和脂肪值，配料/营养搜索只会命中这条新食谱
+$uniqueIngredient = "api-test-ingredient-" + [DateTime]::UtcNow.Ticks
+$ingredientSearchUrl = "$BaseUrl/recipes/search/ingredients?ingredient=$uniqueIngredient&page=1&size=20"
+$nutritionFilter = @{
+  calories = @{ min = 99.5; max = 100.5 }
+  fatContent = @{ min = 987.6; max = 987.7 }
+}
 if ($null -ne $u1) {
   $newRecipeId = Invoke-CurlJson -Method POST -Url "$BaseUrl/recipes" -Headers $u1.headers -Body @{
     name = "API Test Recipe"
     description = "created by run-api-tests.ps1"
     recipeCategory = "Test"
-    recipeIngredientParts = @("salt","water")
+    recipeIngredientParts = @("salt","water",$uniqueIngredient)
     cookTime = "PT10M"
     prepTime = "PT5M"
     totalTime = "PT15M"
     datePublished = 1700000000000
     calories = 100.0
+    fatContent = 987.65
   } -Ok @(200) -Note "(create as user1)"
 
   if ($null -ne $newRecipeId) {
@@ -203,7 +260,17 @@ if ($null -ne $u1) {
       prepTimeIso = "PT10M"
     } -Ok @(200) -Note "(patch times)" | Out-Null
 
+    $byIngredient = Invoke-CurlJson -Method GET -Url $ingredientSearchUrl -Ok @(200) -Note "(after create)"
+    Check-SearchHit -Result $byIngredient -RecipeId $rid -Expected $true -Note "(ingredient search after create)"
+    $byNutrition = Invoke-CurlJson -Method POST -Url "$BaseUrl/recipes/search/nutrition?page=1&size=20" -Body $nutritionFilter -Ok @(200) -Note "(after create)"
+    Check-SearchHit -Result $byNutrition -RecipeId $rid -Expected $true -Note "(nutrition search after create)"
+
     Invoke-CurlJson -Method DELETE -Url "$BaseUrl/recipes/$rid" -Headers $u1.headers -Ok @(200) -Note "(delete)" | Out-Null
+
+    $byIngredient = Invoke-CurlJson -Method GET -Url $ingredientSearchUrl -Ok @(200) -Note "(after delete)"
+    Check-SearchHit -Result $byIngredient -RecipeId $rid -Expected $false -Note "(ingredient search after delete)"
+    $byNutrition = Invoke-CurlJson -Method POST -Url "$BaseUrl/recipes/search/nutrition?page=1&size=20" -Body $nutritionFilter -Ok @(200) -Note "(after delete)"
+    Check-SearchHit -Result $byNutrition -RecipeId $rid -Expected $false -Note "(nutrition search after delete)"
   }
 }
 
@@ -17,6 +17,15 @@ dependencies {
 
     implementation("org.furyio:fury-core:0.3.1")
 
+    // RecipeCache，版本由 Spring Boot 管理
+    implementation("com.github.ben-manes.caffeine:caffeine")
+
+    // IngredientIndex 的压缩倒排表
+    implementation("org.roaringbitmap:RoaringBitmap:0.9.49")
+
+    // COPY 协议导入 (CopyManager)，运行时由 sustc-runner 提供驱动
+    compileOnly("org.postgresql:postgresql")
+
     // You may add any utility library you want to use, such as guava.
     // ORM libraries are prohibited in this project.
     implementation ("org.springframework.boot:spring-boot-starter-web")
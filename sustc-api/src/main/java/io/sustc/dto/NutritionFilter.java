@@ -0,0 +1,82 @@
+package io.sustc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Inclusive ranges on the nutrition fields of {@link RecipeRecord}, combined with AND.
+ * A {@code null} range, or a {@code null} bound, leaves that side unconstrained.
+ * Recipes without a value for a constrained field never match.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NutritionFilter implements Serializable {
+
+    /**
+     * Range of calories
+     */
+    private Range calories;
+
+    /**
+     * Range of fat content
+     */
+    private Range fatContent;
+
+    /**
+     * Range of saturated fat content
+     */
+    private Range saturatedFatContent;
+
+    /**
+     * Range of cholesterol content
+     */
+    private Range cholesterolContent;
+
+    /**
+     * Range of sodium content
+     */
+    private Range sodiumContent;
+
+    /**
+     * Range of carbohydrate content
+     */
+    private Range carbohydrateContent;
+
+    /**
+     * Range of fiber content
+     */
+    private Range fiberContent;
+
+    /**
+     * Range of sugar content
+     */
+    private Range sugarContent;
+
+    /**
+     * Range of protein content
+     */
+    private Range proteinContent;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Range implements Serializable {
+
+        /**
+         * Lower bound, inclusive; {@code null} for none
+         */
+        private Double min;
+
+        /**
+         * Upper bound, inclusive; {@code null} for none
+         */
+        private Double max;
+    }
+}
@@ -33,4 +33,44 @@ public class PageResult<T> implements Serializable {
      * Total number of records matching the query condition.
      */
     private long total;
+
+    /**
+     * Opaque cursor of the next page for keyset-paginated searches,
+     * {@code null} on the last page and for offset-paginated results.
+     */
+    private String nextCursor;
+
+    /**
+     * Hit counts per category and rating of a recipe search,
+     * {@code null} unless the caller asked for them.
+     */
+    private SearchFacets facets;
+
+    public PageResult(List<T> items, int page, int size, long total) {
+        this(items, page, size, total, null, null);
+    }
+
+    /**
+     * How a paginated query computes {@link #total}.
+     */
+    public enum TotalStrategy {
+        /**
+         * A separate {@code COUNT(*)} over all matching rows.
+         */
+        EXACT,
+        /**
+         * {@code COUNT(*) OVER ()} in the page query itself, exact without a second statement.
+         * For keyset pages, assumes every previous page had the same size.
+         */
+        WINDOW,
+        /**
+         * The row estimate of the query planner, corrected on the last page where the exact total is known.
+         * Cheap, but may be off by a large factor for selective filters.
+         */
+        ESTIMATE,
+        /**
+         * An exact count, reused for a short time by searches with the same filters.
+         */
+        CACHED,
+    }
 }
@@ -0,0 +1,47 @@
+package io.sustc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Hit counts of a recipe search, broken down by category and by rating.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchFacets implements Serializable {
+
+    /**
+     * Hits per {@code RecipeCategory}, most hits first; a {@code null} value counts recipes without a category
+     */
+    private List<Facet> categories;
+
+    /**
+     * Hits per rating bucket, highest bucket first. The value {@code "n"} counts ratings in {@code [n, n + 1)};
+     * a {@code null} value counts recipes without a rating
+     */
+    private List<Facet> ratings;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Facet implements Serializable {
+
+        /**
+         * The facet value
+         */
+        private String value;
+
+        /**
+         * Number of matching recipes with this value
+         */
+        private long count;
+    }
+}
@@ -29,6 +29,41 @@ public interface DatabaseService {
             List<RecipeRecord> recipeRecords
     );
 
+    /**
+     * Imports data to an empty database without materializing the records.
+     * <p>
+     * Each source is iterated once per table it feeds (e.g. users for {@code users} and {@code user_follows}),
+     * so every call to {@code iterator()} must start over from the first record.
+     * Records are written in bounded chunks as they are decoded.
+     *
+     * @param reviewRecords review records, re-iterable
+     * @param userRecords  user records, re-iterable
+     * @param recipeRecords recipe records, re-iterable
+     */
+    void importData(
+            Iterable<ReviewRecord> reviewRecords,
+            Iterable<UserRecord> userRecords,
+            Iterable<RecipeRecord> recipeRecords
+    );
+
+    /**
+     * Applies a delta to an already imported database, in one transaction.
+     * <p>
+     * New rows are inserted, and existing rows are updated only if a column changed. The likes of each
+     * given review and the followings of each given user replace the stored ones. Derived counters
+     * ({@code LikesCount}, {@code AggregatedRating}, {@code ReviewCount}, followers and followings)
+     * are recomputed for the affected rows only.
+     *
+     * @param reviewRecords new or changed reviews
+     * @param userRecords  new or changed users
+     * @param recipeRecords new or changed recipes
+     */
+    void importDelta(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords
+    );
+
     /**
      * Delete all tables in the database.
      * <p>
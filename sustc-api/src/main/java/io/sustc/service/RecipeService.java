@@ -1,8 +1,10 @@
 package io.sustc.service;
 
 import io.sustc.dto.AuthInfo;
+import io.sustc.dto.NutritionFilter;
 import io.sustc.dto.PageResult;
 import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.SearchFacets;
 import org.springframework.lang.Nullable;
 
 import java.util.List;
@@ -35,6 +37,15 @@ public interface RecipeService {
      */
     RecipeRecord getRecipeById(long recipeId);
 
+    /**
+     * Batch variant of {@link #getRecipeById}, loading all recipes with one query.
+     *
+     * @param recipeIds the IDs of the recipes to retrieve, in any order, possibly repeated
+     * @return one element per ID, in the order of {@code recipeIds}; {@code null} where no recipe exists
+     * @throws IllegalArgumentException if {@code recipeIds} is {@code null} or contains an ID {@code <= 0}
+     */
+    List<RecipeRecord> getRecipesByIds(long[] recipeIds);
+
 
     /**
      * Searches recipes based on multiple optional criteria, supporting pagination and sorting.
@@ -81,6 +92,91 @@ public interface RecipeService {
             String sort
     );
 
+    /**
+     * Same as {@link #searchRecipes(String, String, Double, Integer, Integer, String)}, computing
+     * {@link PageResult#getTotal() total} with the given strategy.
+     *
+     * @param totalStrategy how to compute the total, {@code null} for {@link PageResult.TotalStrategy#EXACT}
+     */
+    PageResult<RecipeRecord> searchRecipes(
+            @Nullable String keyword,
+            @Nullable String category,
+            @Nullable Double minRating,
+            Integer page,
+            Integer size,
+            @Nullable String sort,
+            @Nullable PageResult.TotalStrategy totalStrategy
+    );
+
+    /**
+     * Counts the hits of a {@link #searchRecipes} query per category and per rating bucket, with one query.
+     *
+     * @param keyword   fuzzy search term for name/description (nullable)
+     * @param category  category filter (nullable)
+     * @param minRating minimum rating filter (nullable)
+     * @return the facets of all recipes matching the filters
+     */
+    SearchFacets searchFacets(@Nullable String keyword, @Nullable String category, @Nullable Double minRating);
+
+    /**
+     * Keyset-paginated variant of {@link #searchRecipes}, with the same filters, sorting and page contents.
+     *
+     * <p>Instead of a page number, each page continues after the last {@code (sort key, recipe id)} of the
+     * previous one, so a deep page costs as much as the first. Pass a {@code null} cursor for the first page,
+     * then the {@link PageResult#getNextCursor() nextCursor} of the previous result, together with the same
+     * filters and sort. {@code nextCursor} is {@code null} on the last page.
+     *
+     * @param keyword   fuzzy search term for name/description (nullable)
+     * @param category  category filter (nullable)
+     * @param minRating minimum rating filter (nullable)
+     * @param cursor    cursor returned by the previous page, {@code null} for the first page
+     * @param size      page size
+     * @param sort      sorting criteria (nullable)
+     * @param totalStrategy how to compute the total, {@code null} for {@link PageResult.TotalStrategy#EXACT}
+     * @return a {@link PageResult} whose {@code page} counts the pages read so far
+     * @throws IllegalArgumentException if {@code size <= 0}, or the cursor is malformed or was created for another sort
+     */
+    PageResult<RecipeRecord> searchRecipesAfter(
+            @Nullable String keyword,
+            @Nullable String category,
+            @Nullable Double minRating,
+            @Nullable String cursor,
+            Integer size,
+            @Nullable String sort,
+            @Nullable PageResult.TotalStrategy totalStrategy
+    );
+
+    /**
+     * Finds the recipes that use all, or any, of the given ingredients, ordered by recipe id.
+     *
+     * <p>Ingredient names are matched exactly after trimming; blank names are ignored.
+     * An ingredient no recipe uses makes an all-match empty, and is ignored by an any-match.
+     * Items carry their ingredients as in {@link #searchRecipes}.
+     *
+     * @param ingredients ingredient names to look for
+     * @param matchAll    {@code true} to require every ingredient, {@code false} for at least one
+     * @param page        page number starting from 1
+     * @param size        page size
+     * @return a {@link PageResult} of the matching recipes with their exact total
+     * @throws IllegalArgumentException if {@code page < 1}, {@code size <= 0}, or no ingredient is given
+     */
+    PageResult<RecipeRecord> searchRecipesByIngredients(List<String> ingredients, boolean matchAll, Integer page, Integer size);
+
+    /**
+     * Finds the recipes whose nutrition values fall into every range of {@code filter}, ordered by recipe id.
+     *
+     * <p>Bounds are inclusive. A recipe without a value for a constrained field does not match.
+     * Items carry their ingredients as in {@link #searchRecipes}.
+     *
+     * @param filter ranges on the nutrition fields; fields left {@code null} are not constrained
+     * @param page   page number starting from 1
+     * @param size   page size
+     * @return a {@link PageResult} of the matching recipes with their exact total
+     * @throws IllegalArgumentException if {@code filter} is {@code null}, a range has {@code min > max},
+     *                                  {@code page < 1} or {@code size <= 0}
+     */
+    PageResult<RecipeRecord> searchRecipesByNutrition(NutritionFilter filter, Integer page, Integer size);
+
     /**
      * Creates a new recipe authored by the authenticated user.
      *
@@ -258,4 +354,21 @@ public interface RecipeService {
      */
     List<Map<String, Object>> getTop3MostComplexRecipesByIngredients();
 
+    /**
+     * Generalizes {@link #getTop3MostComplexRecipesByIngredients()} to the {@code k} recipes
+     * with the most distinct ingredients, under the same ordering, keys and corner cases.
+     *
+     * @param k the maximum number of recipes to return
+     * @return a list of up to {@code k} maps describing the most ingredient-heavy recipes
+     * @throws IllegalArgumentException if {@code k <= 0}
+     */
+    List<Map<String, Object>> getTopKMostComplexRecipes(int k);
+
+    /**
+     * Statistics of the recipe caches, for monitoring.
+     *
+     * @return per cache: size, hit and miss counts, hit rate, evictions and average load time
+     */
+    Map<String, Object> getCacheStats();
+
 }
@@ -4,12 +4,29 @@ import io.sustc.dto.ReviewRecord;
 import io.sustc.dto.UserRecord;
 import io.sustc.dto.RecipeRecord;
 import io.sustc.service.DatabaseService;
+import io.sustc.service.impl.cache.RecipeCache;
+import io.sustc.service.impl.index.CaloriePairIndex;
+import io.sustc.service.impl.index.IngredientDictionary;
+import io.sustc.service.impl.index.IngredientIndex;
+import io.sustc.service.impl.index.NutritionIndex;
+import io.sustc.service.impl.importer.BatchTableLoader;
+import io.sustc.service.impl.importer.Chunks;
+import io.sustc.service.impl.importer.CopyTableLoader;
+import io.sustc.service.impl.importer.DeltaImporter;
+import io.sustc.service.impl.importer.ImportConfig;
+import io.sustc.service.impl.importer.ImportProgress;
+import io.sustc.service.impl.importer.ImportScheduler;
+import io.sustc.service.impl.importer.TableLoader;
+import io.sustc.service.impl.search.SearchConfig;
+import io.sustc.service.impl.search.SearchCountCache;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.sql.*;
@@ -25,288 +42,486 @@ public class DatabaseServiceImpl implements DatabaseService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ImportConfig importConfig;
+
+    @Autowired
+    private RecipeCache recipeCache;
+
+    @Autowired
+    private SearchConfig searchConfig;
+
+    @Autowired
+    private SearchCountCache searchCountCache;
+
+    @Autowired
+    private CaloriePairIndex caloriePairIndex;
+
+    @Autowired
+    private IngredientDictionary ingredientDictionary;
+
+    @Autowired
+    private IngredientIndex ingredientIndex;
+
+    @Autowired
+    private NutritionIndex nutritionIndex;
+
     @Override
     public List<Integer> getGroupMembers() {
         return Arrays.asList(12412610, 12410808); // 替换为你的学号
     }
 
     @Override
-    @Transactional
     public void importData(
             List<ReviewRecord> reviewRecords,
             List<UserRecord> userRecords,
             List<RecipeRecord> recipeRecords) {
+        // List 也是 Iterable，按 subList 分块，不会额外复制
+        importData((Iterable<ReviewRecord>) reviewRecords, userRecords, recipeRecords);
+    }
 
-        Connection conn = DataSourceUtils.getConnection(dataSource);
+    @Override
+    public void importData(
+            Iterable<ReviewRecord> reviewRecords,
+            Iterable<UserRecord> userRecords,
+            Iterable<RecipeRecord> recipeRecords) {
+
+        TableLoader loader = newTableLoader();
+        ImportProgress progress = importConfig.isCheckpoint() ? new ImportProgress(jdbcTemplate) : null;
+        ImportScheduler scheduler = new ImportScheduler()
+                .add("users", conn -> loadChunks(conn, progress, "users", userRecords, loader::loadUsers))
+                .add("recipes", conn -> {
+                    loadChunks(conn, progress, "recipes", recipeRecords, loader::loadRecipes);
+                    resetSequence(conn, "recipes_recipeid_seq", "recipes", "RecipeId");
+                }, "users")
+                .add("reviews", conn -> {
+                    loadChunks(conn, progress, "reviews", reviewRecords, loader::loadReviews);
+                    resetSequence(conn, "reviews_reviewid_seq", "reviews", "ReviewId");
+                }, "users", "recipes")
+                .add("recipe_ingredients", conn -> {
+                    loadChunks(conn, progress, "recipe_ingredients", recipeRecords, loader::loadRecipeIngredients);
+                    resetSequence(conn, "ingredients_ingredientid_seq", "ingredients", "IngredientId");
+                }, "recipes")
+                .add("review_likes", conn -> {
+                    loadChunks(conn, progress, "review_likes", reviewRecords, loader::loadReviewLikes);
+                    loader.refreshLikesCount(conn);
+                }, "users", "reviews")
+                .add("user_follows", conn ->
+                        loadChunks(conn, progress, "user_follows", userRecords, loader::loadUserFollows), "users");
+
+        // ON CONFLICT 依赖唯一索引，batch 引擎只能在带约束的表上导入
+        boolean batchEngine = importConfig.getEngine() == ImportConfig.Engine.BATCH;
+        if (importConfig.isDeferConstraints() && batchEngine) {
+            log.warn("Deferred constraints need the COPY engine, creating constraints up front");
+        }
+        boolean deferConstraints = importConfig.isDeferConstraints() && !batchEngine;
+        List<String[]> indexes = indexes();
+        ImportScheduler finishing = deferConstraints ? constraintAndIndexSteps(indexes) : new ImportScheduler();
+
+        log.info("Importing data with {} engine ({}, {} constraints{})...", importConfig.getEngine(),
+                importConfig.isParallel() ? "parallel x" + importConfig.getParallelism() : "sequential",
+                deferConstraints ? "deferred" : "immediate", progress != null ? ", checkpointed" : "");
         try {
-            createBasicTables();
-
-            String userSQL = "INSERT INTO users(AuthorId, AuthorName, Gender, Age, Followers, Following, Password, IsDeleted) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (AuthorId) DO NOTHING";
-            try (PreparedStatement ps = conn.prepareStatement(userSQL)) {
-                int i = 0;
-                for (UserRecord user : userRecords) {
-                    ps.setLong(1, user.getAuthorId());
-                    ps.setString(2, user.getAuthorName());
-                    ps.setString(3, user.getGender());
-                    ps.setInt(4, user.getAge());
-                    ps.setInt(5, user.getFollowers());
-                    ps.setInt(6, user.getFollowing());
-                    ps.setString(7, user.getPassword());
-                    ps.setBoolean(8, user.isDeleted());
-                    ps.addBatch();
-                    if (++i % 2000 == 0) ps.executeBatch(); // 增大 Batch Size
+            if (progress != null) {
+                // 每个步骤独立连接、按分块提交，进度写入 import_progress
+                int parallelism = importConfig.isParallel() ? importConfig.getParallelism() : 1;
+                createBasicTables(!deferConstraints);
+                if (progress.open()) {
+                    try (Connection conn = dataSource.getConnection()) {
+                        loader.restore(conn);
+                    }
                 }
-                ps.executeBatch();
-            }
-
-            String recipeSQL = "INSERT INTO recipes (RecipeId, Name, AuthorId, CookTime, PrepTime, TotalTime, DatePublished, Description, RecipeCategory, AggregatedRating, ReviewCount, Calories, FatContent, SaturatedFatContent, CholesterolContent, SodiumContent, CarbohydrateContent, FiberContent, SugarContent, ProteinContent, RecipeServings, RecipeYield) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (RecipeId) DO NOTHING";
-            try (PreparedStatement ps = conn.prepareStatement(recipeSQL)) {
-                int i = 0;
-                for (RecipeRecord r : recipeRecords) {
-                    ps.setLong(1, r.getRecipeId());
-                    ps.setString(2, r.getName());
-                    ps.setLong(3, r.getAuthorId());
-                    ps.setString(4, r.getCookTime());
-                    ps.setString(5, r.getPrepTime());
-                    ps.setString(6, r.getTotalTime());
-                    ps.setTimestamp(7, r.getDatePublished());
-                    ps.setString(8, r.getDescription());
-                    ps.setString(9, r.getRecipeCategory());
-                    ps.setFloat(10, r.getAggregatedRating());
-                    ps.setFloat(11, r.getReviewCount());
-                    ps.setFloat(12, r.getCalories());
-                    ps.setFloat(13, r.getFatContent());
-                    ps.setFloat(14, r.getSaturatedFatContent());
-                    ps.setFloat(15, r.getCholesterolContent());
-                    ps.setFloat(16, r.getSodiumContent());
-                    ps.setFloat(17, r.getCarbohydrateContent());
-                    ps.setFloat(18, r.getFiberContent());
-                    ps.setFloat(19, r.getSugarContent());
-                    ps.setFloat(20, r.getProteinContent());
-                    ps.setFloat(21, r.getRecipeServings());
-                    ps.setString(22, r.getRecipeYield());
-                    ps.addBatch();
-                    if (++i % 2000 == 0) ps.executeBatch();
+                scheduler.checkpoint(progress).runParallel(dataSource, parallelism);
+                log.info("Creating indexes and triggers...");
+                if (deferConstraints) {
+                    finishing.checkpoint(progress).runParallel(dataSource, parallelism);
+                    createTriggersAndViews();
+                } else {
+                    createIndexesAndTriggers(indexes);
                 }
-                ps.executeBatch();
-
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("SELECT setval('recipes_recipeid_seq', (SELECT MAX(Recipeid) FROM recipes))");
+            } else if (importConfig.isParallel()) {
+                // 各表在独立连接上并发导入，建表必须先提交
+                createBasicTables(!deferConstraints);
+                scheduler.runParallel(dataSource, importConfig.getParallelism());
+                log.info("Creating indexes and triggers...");
+                if (deferConstraints) {
+                    finishing.runParallel(dataSource, importConfig.getParallelism());
+                    createTriggersAndViews();
+                } else {
+                    createIndexesAndTriggers(indexes);
                 }
+            } else {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Connection conn = DataSourceUtils.getConnection(dataSource);
+                    try {
+                        createBasicTables(!deferConstraints);
+                        scheduler.runSequential(conn);
+                        log.info("Creating indexes and triggers...");
+                        if (deferConstraints) {
+                            finishing.runSequential(conn);
+                            createTriggersAndViews();
+                        } else {
+                            createIndexesAndTriggers(indexes);
+                        }
+                    } catch (SQLException e) {
+                        throw new RuntimeException("Import failed", e);
+                    } finally {
+                        DataSourceUtils.releaseConnection(conn, dataSource);
+                    }
+                });
             }
+            // 全部导入完成后统一收集一次统计信息
+            jdbcTemplate.execute("ANALYZE");
+            if (progress != null) {
+                progress.finish();
+            }
+        } catch (SQLException e) {
+            log.error("Import failed", e);
+            throw new RuntimeException("Import failed", e);
+        } catch (RuntimeException e) {
+            log.error("Import failed", e);
+            throw e;
+        }
+        recipeCache.invalidateAll();
+        searchCountCache.invalidateAll();
+        caloriePairIndex.invalidate();
+        ingredientDictionary.invalidate();
+        ingredientIndex.rebuild();
+        nutritionIndex.invalidate();
+        scheduler.logTimings();
+        finishing.logTimings();
+    }
 
-            String reviewSQL = "INSERT INTO reviews (ReviewId, RecipeId, AuthorId, Rating, Review, DateSubmitted, DateModified, LikesCount) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, 0) ON CONFLICT (ReviewId) DO NOTHING";
-            try (PreparedStatement ps = conn.prepareStatement(reviewSQL)) {
-                int i = 0;
-                for (ReviewRecord r : reviewRecords) {
-                    ps.setLong(1, r.getReviewId());
-                    ps.setLong(2, r.getRecipeId());
-                    ps.setLong(3, r.getAuthorId());
-                    // 修正：数据库 Rating 是 INT，这里强转 int 避免 float 精度问题
-                    ps.setInt(4, (int) r.getRating());
-                    ps.setString(5, r.getReview());
-                    ps.setTimestamp(6, r.getDateSubmitted());
-                    ps.setTimestamp(7, r.getDateModified());
-                    ps.addBatch();
-                    if (++i % 2000 == 0) ps.executeBatch();
-                }
-                ps.executeBatch();
+    @Override
+    public void importDelta(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords) {
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            Connection conn = DataSourceUtils.getConnection(dataSource);
+            try {
+                new DeltaImporter().importDelta(conn, reviewRecords, userRecords, recipeRecords);
+            } catch (SQLException e) {
+                throw new RuntimeException("Delta import failed", e);
+            } finally {
+                DataSourceUtils.releaseConnection(conn, dataSource);
+            }
+        });
+        recipeCache.invalidateAll();
+        searchCountCache.invalidateAll();
+        caloriePairIndex.invalidate();
+        ingredientDictionary.invalidate();
+        ingredientIndex.rebuild();
+        nutritionIndex.invalidate();
+        log.info("Delta import took {} ms", System.currentTimeMillis() - start);
+    }
 
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("SELECT setval('reviews_reviewid_seq', (SELECT MAX(ReviewId) FROM reviews))");
+    @FunctionalInterface
+    private interface ChunkLoader<T> {
+        void load(Connection conn, List<T> chunk) throws SQLException;
+    }
+
+    /**
+     * Feeds {@code source} to {@code load} in chunks of {@link ImportConfig#getChunkSize()} records.
+     * With checkpoints, each chunk is committed together with the step's progress, and the rows
+     * a previous run already committed are skipped.
+     */
+    private <T> void loadChunks(Connection conn, ImportProgress progress, String step, Iterable<T> source,
+                                ChunkLoader<T> load) throws SQLException {
+        int chunkSize = importConfig.getChunkSize();
+        if (progress == null) {
+            Chunks.forEach(source, chunkSize, chunk -> load.load(conn, chunk));
+            return;
+        }
+        long startRow = progress.rowsDone(step);
+        long totalRows = source instanceof Collection ? ((Collection<?>) source).size() : -1;
+        ImportProgress.Meter meter = progress.meter(step, startRow, totalRows);
+        long[] rows = {startRow};
+        Chunks.forEach(source, chunkSize, startRow, chunk -> {
+            load.load(conn, chunk);
+            rows[0] += chunk.size();
+            progress.saveRows(conn, step, rows[0]);
+            conn.commit();
+            meter.update(rows[0]);
+        });
+        meter.done(rows[0]);
+    }
+
+    private TableLoader newTableLoader() {
+        switch (importConfig.getEngine()) {
+            case BATCH:
+                return new BatchTableLoader(importConfig.getBatchSize());
+            case COPY:
+            default:
+                return new CopyTableLoader();
+        }
+    }
+
+    private void resetSequence(Connection conn, String sequence, String table, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT setval('" + sequence + "', (SELECT MAX(" + column + ") FROM " + table + "))");
+        }
+    }
+
+    /**
+     * Table definitions. Constraints are kept apart from the columns so that they can either be created
+     * with the table, or added after the data is loaded (see {@link ImportConfig#isDeferConstraints()}).
+     */
+    private static final TableDef[] TABLES = {
+            new TableDef("users",
+                    "AuthorId BIGINT," +
+                            " AuthorName VARCHAR(255)," +
+                            " Gender VARCHAR(10)," +
+                            " Age INTEGER," +
+                            " Followers INTEGER DEFAULT 0," +
+                            " Following INTEGER DEFAULT 0," +
+                            " Password VARCHAR(255)," +
+                            " IsDeleted BOOLEAN DEFAULT FALSE",
+                    "PRIMARY KEY (AuthorId)"),
+
+            new TableDef("recipes",
+                    "RecipeId BIGSERIAL," +
+                            " Name VARCHAR(500)," +
+                            " AuthorId BIGINT," +
+                            " CookTime VARCHAR(50)," +
+                            " PrepTime VARCHAR(50)," +
+                            " TotalTime VARCHAR(50)," +
+                            " DatePublished TIMESTAMP," +
+                            " Description TEXT," +
+                            " RecipeCategory VARCHAR(255)," +
+                            " AggregatedRating DECIMAL(3,2)," +
+                            " ReviewCount INTEGER DEFAULT 0," +
+                            " Calories DECIMAL(10,2)," +
+                            " FatContent DECIMAL(10,2)," +
+                            " SaturatedFatContent DECIMAL(10,2)," +
+                            " CholesterolContent DECIMAL(10,2)," +
+                            " SodiumContent DECIMAL(10,2)," +
+                            " CarbohydrateContent DECIMAL(10,2)," +
+                            " FiberContent DECIMAL(10,2)," +
+                            " SugarContent DECIMAL(10,2)," +
+                            " ProteinContent DECIMAL(10,2)," +
+                            " RecipeServings VARCHAR(100)," +
+                            " RecipeYield VARCHAR(100)," +
+                            " IngredientCount INTEGER NOT NULL DEFAULT 0",
+                    "PRIMARY KEY (RecipeId)",
+                    "FOREIGN KEY (AuthorId) REFERENCES users(AuthorId)"),
+
+            new TableDef("reviews",
+                    "ReviewId BIGSERIAL," +
+                            " RecipeId BIGINT," +
+                            " AuthorId BIGINT," +
+                            " Rating INTEGER," +
+                            " Review TEXT," +
+                            " DateSubmitted TIMESTAMP," +
+                            " DateModified TIMESTAMP," +
+                            " LikesCount BIGINT DEFAULT 0",
+                    "PRIMARY KEY (ReviewId)",
+                    "FOREIGN KEY (RecipeId) REFERENCES recipes(RecipeId) ON DELETE CASCADE",
+                    "FOREIGN KEY (AuthorId) REFERENCES users(AuthorId)"),
+
+            // 配料字典：recipe_ingredients 只存整数 id，不再每行重复配料文本
+            new TableDef("ingredients",
+                    "IngredientId SERIAL," +
+                            " Name VARCHAR(500) NOT NULL",
+                    "PRIMARY KEY (IngredientId)",
+                    "UNIQUE (Name)"),
+
+            new TableDef("recipe_ingredients",
+                    "RecipeId BIGINT," +
+                            " IngredientId INTEGER",
+                    "PRIMARY KEY (RecipeId, IngredientId)",
+                    "FOREIGN KEY (RecipeId) REFERENCES recipes(RecipeId) ON DELETE CASCADE",
+                    "FOREIGN KEY (IngredientId) REFERENCES ingredients(IngredientId)"),
+
+            new TableDef("review_likes",
+                    "ReviewId BIGINT, AuthorId BIGINT",
+                    "PRIMARY KEY (ReviewId, AuthorId)",
+                    "FOREIGN KEY (ReviewId) REFERENCES reviews(ReviewId) ON DELETE CASCADE",
+                    "FOREIGN KEY (AuthorId) REFERENCES users(AuthorId)"),
+
+            new TableDef("user_follows",
+                    "FollowerId BIGINT, FollowingId BIGINT",
+                    "PRIMARY KEY (FollowerId, FollowingId)",
+                    "FOREIGN KEY (FollowerId) REFERENCES users(AuthorId)",
+                    "FOREIGN KEY (FollowingId) REFERENCES users(AuthorId)",
+                    "CHECK (FollowerId != FollowingId)")
+    };
+
+    /**
+     * Secondary indexes as {table, DDL}, built once the data is loaded.
+     */
+    private static final String[][] INDEXES = {
+            // 与 RecipeSort 的各个 ORDER BY 一致 (含 recipeid DESC)，搜索第一阶段只取 id 时可走 index-only scan；
+            // INCLUDE aggregatedrating 覆盖 minRating 过滤
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_rating ON recipes(aggregatedrating DESC, recipeid DESC)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_date ON recipes(datepublished DESC, recipeid DESC) INCLUDE (aggregatedrating)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_calories ON recipes(calories, recipeid DESC) INCLUDE (aggregatedrating)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_category_id ON recipes(recipecategory, recipeid DESC) INCLUDE (aggregatedrating)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_category_rating ON recipes(recipecategory, aggregatedrating DESC, recipeid DESC)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_category_date ON recipes(recipecategory, datepublished DESC, recipeid DESC) INCLUDE (aggregatedrating)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_category_calories ON recipes(recipecategory, calories, recipeid DESC) INCLUDE (aggregatedrating)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_name ON recipes(name)"},
+            {"recipe_ingredients", "CREATE INDEX IF NOT EXISTS idx_ingr_recipe_id ON recipe_ingredients(recipeid)"},
+            {"recipe_ingredients", "CREATE INDEX IF NOT EXISTS idx_ingr_ingredient ON recipe_ingredients(ingredientid)"},
+            {"users", "CREATE INDEX IF NOT EXISTS idx_users_name ON users(authorname)"},
+            {"user_follows", "CREATE INDEX IF NOT EXISTS idx_user_follows_follower ON user_follows(followerid)"},
+            {"user_follows", "CREATE INDEX IF NOT EXISTS idx_user_follows_following ON user_follows(followingid)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_ingredient_count ON recipes(ingredientcount DESC, recipeid ASC)"},
+            {"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_author_date ON recipes(authorid, datepublished DESC, recipeid DESC)"},
+            {"reviews", "CREATE INDEX IF NOT EXISTS idx_reviews_recipe_date ON reviews(recipeid, datemodified DESC, reviewid DESC)"},
+            {"reviews", "CREATE INDEX IF NOT EXISTS idx_reviews_recipe_likes ON reviews(recipeid, likescount DESC, datemodified DESC, reviewid DESC)"},
+    };
+
+    /**
+     * @param withConstraints whether to create primary keys, foreign keys and checks with the tables
+     */
+    private void createBasicTables(boolean withConstraints) {
+        for (TableDef table : TABLES) {
+            String body = table.getColumns();
+            if (withConstraints) {
+                for (String constraint : table.getConstraints()) {
+                    body += ", " + constraint;
                 }
             }
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table.getName() + " (" + body + ")");
+        }
+    }
 
-            String ingredientsSQL = "INSERT INTO recipe_ingredients (RecipeId, IngredientPart) VALUES (?, ?) ON CONFLICT DO NOTHING";
-            try (PreparedStatement ps = conn.prepareStatement(ingredientsSQL)) {
-                int i = 0;
-                for (RecipeRecord r : recipeRecords) {
-                    Set<String> uniqueIngredients = new HashSet<>(Arrays.asList(r.getRecipeIngredientParts()));
-                    for (String ingredient : uniqueIngredients) {
-                        ps.setLong(1, r.getRecipeId());
-                        ps.setString(2, ingredient);
-                        ps.addBatch();
-                        if (++i % 2000 == 0) ps.executeBatch();
-                    }
+    /**
+     * Adds the deferred constraints and builds the indexes of bare tables.
+     * <p>
+     * Each table gets one step that adds its primary key and then its foreign keys, after the steps of the
+     * referenced tables. Index builds of a table follow its constraint step, so no step waits on a table lock
+     * held by another one.
+     */
+    private ImportScheduler constraintAndIndexSteps(List<String[]> indexes) {
+        String memory = "SET LOCAL maintenance_work_mem = '" + importConfig.getMaintenanceWorkMem() + "'";
+        ImportScheduler scheduler = new ImportScheduler();
+        for (TableDef table : TABLES) {
+            List<String> dependsOn = new ArrayList<>();
+            for (TableDef other : TABLES) {
+                if (other != table && table.references(other.getName())) {
+                    dependsOn.add("constraints:" + other.getName());
                 }
-                ps.executeBatch();
             }
-
-
-            String reviewlikeSQL = "INSERT INTO review_likes (ReviewId, AuthorId) " +
-                    "SELECT ?, ? " +
-                    "WHERE EXISTS (SELECT 1 FROM reviews WHERE ReviewId = ?) " +
-                    "  AND EXISTS (SELECT 1 FROM users WHERE AuthorId = ?) " +
-                    "ON CONFLICT DO NOTHING";
-            try (PreparedStatement ps = conn.prepareStatement(reviewlikeSQL)) {
-                int i = 0;
-                for (ReviewRecord r : reviewRecords) {
-                    if (r.getLikes() != null && r.getLikes().length > 0) {
-                        Set<Long> uniqueLikes = new HashSet<>();
-                        for (long id : r.getLikes()) uniqueLikes.add(id);
-
-                        for (Long likeAuthorId : uniqueLikes) {
-                            ps.setLong(1, r.getReviewId());
-                            ps.setLong(2, likeAuthorId);
-                            ps.setLong(3, r.getReviewId());
-                            ps.setLong(4, likeAuthorId);
-                            ps.addBatch();
-                            if (++i % 2000 == 0) ps.executeBatch();
+            scheduler.add("constraints:" + table.getName(), conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(memory);
+                    for (String constraint : table.getConstraints()) {
+                        if (constraint.startsWith("PRIMARY KEY")) {
+                            addPrimaryKey(conn, stmt, table.getName(), constraint);
+                        } else {
+                            stmt.execute("ALTER TABLE " + table.getName() + " ADD " + constraint);
                         }
                     }
                 }
-                ps.executeBatch();
-            }
-
+            }, dependsOn.toArray(new String[0]));
+        }
+        for (String[] index : indexes) {
+            scheduler.add(indexName(index[1]), conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(memory);
+                    stmt.execute(index[1]);
+                }
+            }, "constraints:" + index[0]);
+        }
+        return scheduler;
+    }
 
-            try (Statement stmt = conn.createStatement()) {
-                log.info("Updating LikesCount in bulk...");
-                stmt.execute("""
-                            UPDATE reviews r
-                            SET LikesCount = s.cnt
-                            FROM (
-                                SELECT ReviewId, COUNT(*) as cnt
-                                FROM review_likes
-                                GROUP BY ReviewId
-                            ) s
-                            WHERE r.ReviewId = s.ReviewId
-                        """);
+    /**
+     * Adds a deferred primary key. The bare tables accept repeated keys, which only show up here; the error then
+     * lists some of the repeated keys instead of failing on the first one PostgreSQL happens to meet.
+     */
+    private static void addPrimaryKey(Connection conn, Statement stmt, String table, String constraint) throws SQLException {
+        // 失败的语句会中止事务，回滚到保存点后才能查询重复的主键
+        Savepoint savepoint = conn.setSavepoint();
+        try {
+            stmt.execute("ALTER TABLE " + table + " ADD " + constraint);
+        } catch (SQLException e) {
+            if (!"23505".equals(e.getSQLState())) {
+                throw e;
             }
-
-            String userfollowsSQL = "INSERT INTO user_follows (FollowerId, FollowingId) VALUES (?, ?) ON CONFLICT DO NOTHING";
-            try (PreparedStatement ps = conn.prepareStatement(userfollowsSQL)) {
-                int i = 0;
-                for (UserRecord user : userRecords) {
-                    if (user.getFollowingUsers() != null) {
-                        for (long followingId : user.getFollowingUsers()) {
-                            ps.setLong(1, user.getAuthorId());
-                            ps.setLong(2, followingId);
-                            ps.addBatch();
-                            if (++i % 2000 == 0) ps.executeBatch();
-                        }
+            conn.rollback(savepoint);
+            String columns = constraint.substring(constraint.indexOf('(') + 1, constraint.lastIndexOf(')'));
+            List<String> duplicates = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT " + columns + ", COUNT(*) FROM " + table +
+                    " GROUP BY " + columns + " HAVING COUNT(*) > 1 LIMIT 10")) {
+                int keyColumns = rs.getMetaData().getColumnCount() - 1;
+                while (rs.next()) {
+                    StringJoiner key = new StringJoiner(", ", "(", ")");
+                    for (int i = 1; i <= keyColumns; i++) {
+                        key.add(rs.getString(i));
                     }
+                    duplicates.add(key + " x" + rs.getLong(keyColumns + 1));
                 }
-                ps.executeBatch();
             }
+            throw new SQLException("Repeated primary keys in " + table + " (" + columns + "): "
+                    + String.join(", ", duplicates), e.getSQLState(), e);
+        }
+    }
 
-            log.info("Creating indexes and triggers...");
-            createIndexesAndTriggers();
-
-        } catch (SQLException e) {
-            log.error("Import failed", e);
-            throw new RuntimeException("Import failed", e);
-        } finally {
-            DataSourceUtils.releaseConnection(conn, dataSource);
+    /**
+     * {@link #INDEXES} plus the keyword search indexes of the configured {@link SearchConfig.Mode}.
+     * Creates {@code pg_trgm} if needed, so call it outside the import transaction.
+     */
+    private List<String[]> indexes() {
+        List<String[]> indexes = new ArrayList<>(Arrays.asList(INDEXES));
+        switch (searchConfig.getMode()) {
+            case TRIGRAM:
+                if (createTrigramExtension()) {
+                    // 与 searchRecipes 中的 LOWER(...) LIKE '%kw%' 表达式一致
+                    indexes.add(new String[]{"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_name_trgm ON recipes USING gin (LOWER(name) gin_trgm_ops)"});
+                    indexes.add(new String[]{"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_description_trgm ON recipes USING gin (LOWER(description) gin_trgm_ops)"});
+                }
+                break;
+            case FULLTEXT:
+                indexes.add(new String[]{"recipes", "CREATE INDEX IF NOT EXISTS idx_recipes_fulltext ON recipes USING gin (" + SearchConfig.FULLTEXT_DOCUMENT + ")"});
+                break;
+            default:
+                break;
         }
+        return indexes;
     }
 
-    private void createBasicTables() {
-        String[] sqls = {
-                "CREATE TABLE IF NOT EXISTS users (" +
-                        "AuthorId BIGINT PRIMARY KEY," +
-                        " AuthorName VARCHAR(255)," +
-                        " Gender VARCHAR(10)," +
-                        " Age INTEGER," +
-                        " Followers INTEGER DEFAULT 0," +
-                        " Following INTEGER DEFAULT 0," +
-                        " Password VARCHAR(255)," +
-                        " IsDeleted BOOLEAN DEFAULT FALSE" +
-                        ")",
-
-
-                "CREATE TABLE IF NOT EXISTS recipes " +
-                        "(RecipeId BIGSERIAL PRIMARY KEY," +
-                        " Name VARCHAR(500)," +
-                        " AuthorId BIGINT," +
-                        " CookTime VARCHAR(50)," +
-                        " PrepTime VARCHAR(50)," +
-                        " TotalTime VARCHAR(50)," +
-                        " DatePublished TIMESTAMP," +
-                        " Description TEXT," +
-                        " RecipeCategory VARCHAR(255)," +
-                        " AggregatedRating DECIMAL(3,2)," +
-                        " ReviewCount INTEGER DEFAULT 0," +
-                        " Calories DECIMAL(10,2)," +
-                        " FatContent DECIMAL(10,2)," +
-                        " SaturatedFatContent DECIMAL(10,2)," +
-                        " CholesterolContent DECIMAL(10,2)," +
-                        " SodiumContent DECIMAL(10,2)," +
-                        " CarbohydrateContent DECIMAL(10,2)," +
-                        " FiberContent DECIMAL(10,2)," +
-                        " SugarContent DECIMAL(10,2)," +
-                        " ProteinContent DECIMAL(10,2)," +
-                        " RecipeServings VARCHAR(100)," +
-                        " RecipeYield VARCHAR(100)," +
-                        " FOREIGN KEY (AuthorId) REFERENCES users(AuthorId))",
-
-
-                "CREATE TABLE IF NOT EXISTS reviews " +
-                        "(ReviewId BIGSERIAL PRIMARY KEY," +
-                        " RecipeId BIGINT," +
-                        " AuthorId BIGINT," +
-                        " Rating INTEGER," +
-                        " Review TEXT," +
-                        " DateSubmitted TIMESTAMP," +
-                        " DateModified TIMESTAMP," +
-                        " LikesCount BIGINT DEFAULT 0," +
-                        " FOREIGN KEY (RecipeId) REFERENCES recipes(RecipeId) ON DELETE CASCADE," +
-                        " FOREIGN KEY (AuthorId) REFERENCES users(AuthorId))",
-
-
-                "CREATE TABLE IF NOT EXISTS recipe_ingredients " +
-                        "(RecipeId BIGINT," +
-                        " IngredientPart VARCHAR(500)," +
-                        " PRIMARY KEY (RecipeId, IngredientPart)," +
-                        " FOREIGN KEY (RecipeId) REFERENCES recipes(RecipeId) ON DELETE CASCADE)",
-
-
-                "CREATE TABLE IF NOT EXISTS review_likes " +
-                        "(ReviewId BIGINT, AuthorId BIGINT," +
-                        " PRIMARY KEY (ReviewId, AuthorId)," +
-                        " FOREIGN KEY (ReviewId) REFERENCES reviews(ReviewId) ON DELETE CASCADE," +
-                        " FOREIGN KEY (AuthorId) REFERENCES users(AuthorId))",
-
-
-                "CREATE TABLE IF NOT EXISTS user_follows " +
-                        "(FollowerId BIGINT, FollowingId BIGINT," +
-                        " PRIMARY KEY (FollowerId, FollowingId)," +
-                        " FOREIGN KEY (FollowerId) REFERENCES users(AuthorId)," +
-                        " FOREIGN KEY (FollowingId) REFERENCES users(AuthorId)," +
-                        " CHECK (FollowerId != FollowingId))"
-        };
-        for (String sql : sqls) jdbcTemplate.execute(sql);
+    private boolean createTrigramExtension() {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("pg_trgm is not available, keyword searches will scan recipes: {}", e.getMessage());
+            return false;
+        }
     }
 
-    private void createIndexesAndTriggers() {
-        String[] sqls = {
+    // CREATE INDEX IF NOT EXISTS <name> ON ...
+    private static String indexName(String ddl) {
+        return ddl.split("\\s+")[5];
+    }
 
-                // =========================
-                // 1) Indexes
-                // =========================
-                "CREATE INDEX IF NOT EXISTS idx_recipes_rating ON recipes(aggregatedrating)",
-                "CREATE INDEX IF NOT EXISTS idx_recipes_date ON recipes(datepublished)",
-                "CREATE INDEX IF NOT EXISTS idx_recipes_calories ON recipes(calories)",
-                "CREATE INDEX IF NOT EXISTS idx_recipes_name ON recipes(name)",
-                "CREATE INDEX IF NOT EXISTS idx_recipes_category ON recipes(recipecategory)",
-                "CREATE INDEX IF NOT EXISTS idx_ingr_recipe_id ON recipe_ingredients(recipeid)",
-                "CREATE INDEX IF NOT EXISTS idx_ingr_name ON recipe_ingredients(ingredientpart)",
-                "CREATE INDEX IF NOT EXISTS idx_users_name ON users(authorname)",
-                "CREATE INDEX IF NOT EXISTS idx_user_follows_follower ON user_follows(followerid)",
-                "CREATE INDEX IF NOT EXISTS idx_user_follows_following ON user_follows(followingid)",
-                "CREATE INDEX IF NOT EXISTS idx_recipes_author_date ON recipes(authorid, datepublished DESC, recipeid DESC)",
-                "CREATE INDEX IF NOT EXISTS idx_reviews_recipe_date ON reviews(recipeid, datemodified DESC, reviewid DESC)",
-                "CREATE INDEX IF NOT EXISTS idx_reviews_recipe_likes ON reviews(recipeid, likescount DESC, datemodified DESC, reviewid DESC)",
+    private void createIndexesAndTriggers(List<String[]> indexes) {
+        for (String[] index : indexes) {
+            jdbcTemplate.execute(index[1]);
+        }
+        createTriggersAndViews();
+    }
 
+    private void createTriggersAndViews() {
+        String[] sqls = {
 
                 // =========================
-                // 2) Trigger: maintain LikesCount
+                // 1) Trigger: maintain LikesCount
                 // =========================
                 """
             CREATE OR REPLACE FUNCTION update_like_count() RETURNS TRIGGER AS $$
             BEGIN
+                -- 增量导入在事务内设置 sustc.skip_counters，最后统一重算计数
+                IF current_setting('sustc.skip_counters', true) = 'on' THEN
+                    RETURN NULL;
+                END IF;
                 IF (TG_OP = 'INSERT') THEN
                     UPDATE reviews SET likescount = COALESCE(likescount, 0) + 1 WHERE reviewid = NEW.reviewid;
                     RETURN NEW;
@@ -327,11 +542,15 @@ public class DatabaseServiceImpl implements DatabaseService {
 
 
                 // =========================
-                // 3) NEW Trigger: maintain followers/following counts by DB
+                // 2) NEW Trigger: maintain followers/following counts by DB
                 // =========================
                 """
             CREATE OR REPLACE FUNCTION update_follow_counts() RETURNS TRIGGER AS $$
             BEGIN
+                -- 增量导入在事务内设置 sustc.skip_counters，最后统一重算计数
+                IF current_setting('sustc.skip_counters', true) = 'on' THEN
+                    RETURN NULL;
+                END IF;
                 IF (TG_OP = 'INSERT') THEN
                     UPDATE users
                     SET following = COALESCE(following, 0) + 1
@@ -368,7 +587,7 @@ public class DatabaseServiceImpl implements DatabaseService {
 
 
                 // =========================
-                // 4) View: follow ratio (for highest follow ratio query)
+                // 3) View: follow ratio (for highest follow ratio query)
                 // =========================
                 """
             CREATE OR REPLACE VIEW v_follow_ratio AS
@@ -394,7 +613,7 @@ public class DatabaseServiceImpl implements DatabaseService {
 
 
                 // =========================
-                // 5) Function skeleton: closest calorie pair
+                // 4) Function skeleton: closest calorie pair
                 //    (Complete function body inserted; call: SELECT * FROM get_closest_calorie_pair();
                 // =========================
                 """
@@ -449,10 +668,38 @@ public class DatabaseServiceImpl implements DatabaseService {
     public void drop() {
         String sql = "DO $$ DECLARE r RECORD; BEGIN FOR r IN (SELECT tablename FROM pg_tables WHERE schemaname = 'public') LOOP EXECUTE 'DROP TABLE IF EXISTS ' || QUOTE_IDENT(r.tablename) || ' CASCADE'; END LOOP; END $$;";
         jdbcTemplate.execute(sql);
+        recipeCache.invalidateAll();
+        searchCountCache.invalidateAll();
+        caloriePairIndex.invalidate();
+        ingredientDictionary.invalidate();
+        ingredientIndex.invalidate();
+        nutritionIndex.invalidate();
     }
 
     @Override
     public Integer sum(int a, int b) {
         return jdbcTemplate.queryForObject("SELECT ?+?", Integer.class, a, b);
     }
-}
\ No newline at end of file
+
+    @Value
+    private static class TableDef {
+        String name;
+        String columns;
+        String[] constraints;
+
+        TableDef(String name, String columns, String... constraints) {
+            this.name = name;
+            this.columns = columns;
+            this.constraints = constraints;
+        }
+
+        boolean references(String table) {
+            for (String constraint : constraints) {
+                if (constraint.contains("REFERENCES " + table + "(")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -3,7 +3,23 @@ package io.sustc.service.impl;
 import io.sustc.dto.*;
 import io.sustc.service.RecipeService;
 import io.sustc.service.UserService;
+import io.sustc.service.impl.cache.RecipeCache;
+import io.sustc.service.impl.index.CaloriePairIndex;
+import io.sustc.service.impl.index.IngredientDictionary;
+import io.sustc.service.impl.index.IngredientIndex;
+import io.sustc.service.impl.index.NutritionIndex;
+import io.sustc.service.impl.search.RecipeSort;
+import io.sustc.service.impl.search.SearchConfig;
+import io.sustc.service.impl.search.SearchCountCache;
+import io.sustc.service.impl.search.SearchCursor;
+import io.sustc.service.impl.search.SearchPageCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -16,10 +32,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Duration;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,10 +50,83 @@ public class RecipeServiceImpl implements RecipeService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RecipeCache recipeCache;
+
+    @Autowired
+    private SearchConfig searchConfig;
+
+    @Autowired
+    private SearchCountCache searchCountCache;
+
+    @Autowired
+    private SearchPageCache searchPageCache;
+
+    @Autowired
+    private CaloriePairIndex caloriePairIndex;
+
+    @Autowired
+    private IngredientDictionary ingredientDictionary;
+
+    @Autowired
+    private IngredientIndex ingredientIndex;
+
+    @Autowired
+    private NutritionIndex nutritionIndex;
+
+    /**
+     * Columns read back after inserting a recipe: its id, and the nutrition values as stored.
+     */
+    private static final String[] CREATED_RECIPE_COLUMNS = createdRecipeColumns();
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     private final RowMapper<RecipeRecord> recipeRecordRowMapper = new BeanPropertyRowMapper<>(RecipeRecord.class);
 
+    /**
+     * Maps a recipe row that carries its ingredient ids in an {@code ingredients} integer array column.
+     */
+    private final RowMapper<RecipeRecord> recipeWithIngredientsRowMapper = (rs, rowNum) -> {
+        RecipeRecord record = withDefaultRating(recipeRecordRowMapper.mapRow(rs, rowNum));
+        record.setRecipeIngredientParts(ingredientNames(toIntArray(rs.getArray("ingredients"))));
+        return record;
+    };
+
+    /**
+     * {@link #getRecipeById} reports a recipe without reviews with rating 0, search results keep {@code null}.
+     */
+    private static RecipeRecord withDefaultRating(RecipeRecord record) {
+        if (record.getAggregatedRating() == null) {
+            record.setAggregatedRating(0f);
+        }
+        return record;
+    }
+
+    /**
+     * Reads an integer array column while its ResultSet is open; {@code NULL} reads as an empty array.
+     */
+    private static int[] toIntArray(Array array) throws SQLException {
+        Integer[] values = array == null ? new Integer[0] : (Integer[]) array.getArray();
+        return Arrays.stream(values).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Resolves ingredient ids through the {@link IngredientDictionary}, sorted by {@code String::compareToIgnoreCase}.
+     */
+    private String[] ingredientNames(int[] ingredientIds) {
+        String[] ingredients = ingredientDictionary.names(ingredientIds);
+        // 先按自然顺序排，大小写不同的同名配料之间顺序也固定
+        Arrays.sort(ingredients);
+        Arrays.sort(ingredients, String::compareToIgnoreCase);
+        return ingredients;
+    }
+
     @Override
     public String getNameFromID(long id) {
+        return recipeCache.getName(id, this::loadNameFromID);
+    }
+
+    private String loadNameFromID(long id) {
         String sql = "SELECT name FROM recipes " +
                 "WHERE recipeid = ? ";
         try {
@@ -50,156 +141,507 @@ public class RecipeServiceImpl implements RecipeService {
         if (recipeId <= 0) {
             throw new IllegalArgumentException();
         }
+        return recipeCache.getRecipe(recipeId, this::loadRecipeById);
+    }
 
-        // 1. 修改 SQL：加入 LEFT JOIN 获取作者名字 (authorName)
-        // 就像修复 searchRecipes 一样，这里也需要作者名
-        String sql = """
-            SELECT r.recipeid AS RecipeId,
-                   r.name AS name,
-                   r.authorid AS authorId,
-                   u.authorname AS authorName,
-                   r.cooktime AS cookTime,
-                   r.preptime AS prepTime,
-                   r.totaltime AS totalTime,
-                   r.datepublished AS datePublished,
-                   r.description,
-                   r.recipecategory AS recipeCategory,
-                   COALESCE(r.aggregatedRating, 0) as aggregatedRating,
-                   r.reviewcount AS reviewCount,
-                   r.calories,
-                   r.fatcontent AS fatContent,
-                   r.saturatedfatcontent AS saturatedFatContent,
-                   r.cholesterolcontent AS  cholesterolContent,
-                   r.sodiumcontent  AS sodiumContent,
-                   r.carbohydratecontent AS carbohydrateContent,
-                   r.fibercontent  AS fiberContent,
-                   r.sugarcontent AS sugarContent,
-                   r.proteincontent  AS proteinContent,
-                   r.recipeservings AS recipeServings,
-                   r.recipeyield AS recipeYield
+    // authorName 来自 LEFT JOIN users u
+    private static final String RECIPE_COLUMNS = """
+            r.recipeid AS RecipeId,
+            r.name AS name,
+            r.authorid AS authorId,
+            u.authorname AS authorName,
+            r.cooktime AS cookTime,
+            r.preptime AS prepTime,
+            r.totaltime AS totalTime,
+            r.datepublished AS datePublished,
+            r.description,
+            r.recipecategory AS recipeCategory,
+            r.aggregatedrating AS aggregatedRating,
+            r.reviewcount AS reviewCount,
+            r.calories,
+            r.fatcontent AS fatContent,
+            r.saturatedfatcontent AS saturatedFatContent,
+            r.cholesterolcontent AS  cholesterolContent,
+            r.sodiumcontent  AS sodiumContent,
+            r.carbohydratecontent AS carbohydrateContent,
+            r.fibercontent  AS fiberContent,
+            r.sugarcontent AS sugarContent,
+            r.proteincontent  AS proteinContent,
+            r.recipeservings AS recipeServings,
+            r.recipeyield AS recipeYield
+            """;
+
+    /**
+     * A complete recipe row for {@link #recipeWithIngredientsRowMapper}, to be followed by a {@code WHERE} clause.
+     */
+    // 配料 id 通过 ARRAY 子查询一起取回，一次往返，名字由内存字典解析
+    private static final String RECIPE_WITH_INGREDIENTS_SELECT = "SELECT " + RECIPE_COLUMNS + """
+            , ARRAY(SELECT ri.ingredientid
+                    FROM recipe_ingredients ri
+                    WHERE ri.recipeid = r.recipeid) AS ingredients
             FROM recipes r
             LEFT JOIN users u ON r.authorid = u.authorid
-            WHERE r.recipeid = ?
-        """;
+            """;
 
-        try {
-            RecipeRecord record = jdbcTemplate.queryForObject(sql, recipeRecordRowMapper, recipeId);
-            if (record != null) {
-                String ingredientSql = " SELECT ingredientpart FROM recipe_ingredients WHERE recipeid = ? ORDER BY LOWER(ingredientpart) ";
-                String[] ingredients = jdbcTemplate.queryForList(ingredientSql, String.class, recipeId).toArray(new String[0]);
+    /**
+     * The same recipe row without its ingredients, for {@link #recipeRecordRowMapper}.
+     */
+    private static final String RECIPE_SELECT = "SELECT " + RECIPE_COLUMNS + """
+            FROM recipes r
+            LEFT JOIN users u ON r.authorid = u.authorid
+            """;
 
-                record.setRecipeIngredientParts(ingredients);
-            }
-            return record;
+    private RecipeRecord loadRecipeById(long recipeId) {
+        String sql = RECIPE_WITH_INGREDIENTS_SELECT + " WHERE r.recipeid = ? ";
+
+        try {
+            return jdbcTemplate.queryForObject(sql, recipeWithIngredientsRowMapper, recipeId);
 
         } catch (EmptyResultDataAccessException e) {
             return null;
         }
     }
 
+    @Override
+    public List<RecipeRecord> getRecipesByIds(long[] recipeIds) {
+        if (recipeIds == null) {
+            throw new IllegalArgumentException("Recipe ids must not be null.");
+        }
+        Set<Long> uniqueIds = new LinkedHashSet<>();
+        for (long recipeId : recipeIds) {
+            if (recipeId <= 0) {
+                throw new IllegalArgumentException();
+            }
+            uniqueIds.add(recipeId);
+        }
+        Map<Long, RecipeRecord> found = uniqueIds.isEmpty()
+                ? Collections.emptyMap()
+                : recipeCache.getRecipes(uniqueIds, this::loadRecipesByIds);
+
+        List<RecipeRecord> result = new ArrayList<>(recipeIds.length);
+        for (long recipeId : recipeIds) {
+            result.add(found.get(recipeId));
+        }
+        return result;
+    }
+
+    /**
+     * Loads the recipes and then all of their ingredients with one grouped query, two round trips in total
+     * instead of one correlated subquery per recipe.
+     */
+    private Map<Long, RecipeRecord> loadRecipesByIds(Set<Long> recipeIds) {
+        Map<Long, RecipeRecord> byId = loadRecipes(recipeIds);
+        byId.values().forEach(RecipeServiceImpl::withDefaultRating);
+        fillIngredients(byId.values());
+        return byId;
+    }
 
     @Override
     public PageResult<RecipeRecord> searchRecipes(String keyword, String category, Double minRating, Integer page, Integer size, String sort) {
+        return searchRecipes(keyword, category, minRating, page, size, sort, PageResult.TotalStrategy.EXACT);
+    }
+
+    @Override
+    public PageResult<RecipeRecord> searchRecipes(String keyword, String category, Double minRating, Integer page, Integer size,
+                                                  String sort, PageResult.TotalStrategy totalStrategy) {
         if (page == null || page < 1 || size == null || size <= 0) {
             throw new IllegalArgumentException("Page and size must be valid.");
         }
+        PageResult.TotalStrategy strategy = totalStrategy == null ? PageResult.TotalStrategy.EXACT : totalStrategy;
+        SearchPageCache.Key key = SearchPageCache.Key.of(keyword, category, minRating, page, size, sort, strategy);
+        return searchPageCache.get(key, () -> loadSearchPage(keyword, category, minRating, page, size, sort, strategy));
+    }
 
-        String wherePart = " WHERE 1 = 1 ";
+    private PageResult<RecipeRecord> loadSearchPage(String keyword, String category, Double minRating, int page, int size,
+                                                    String sort, PageResult.TotalStrategy strategy) {
         List<Object> args = new ArrayList<>();
+        String wherePart = searchWhere(keyword, category, minRating, args);
+        Object[] whereArgs = args.toArray();
 
-        if (StringUtils.hasText(keyword)) {
-            String[] words = keyword.trim().split("\\s+");
-            for (String word : words) {
-                wherePart += " AND (LOWER(r.name) LIKE ? OR LOWER(r.description) LIKE ?) ";
-                String token = "%" + word.toLowerCase() + "%";
-                args.add(token);
-                args.add(token);
-            }
+        long total = searchTotal(strategy, wherePart, whereArgs);
+        if (total == 0 && strategy != PageResult.TotalStrategy.ESTIMATE) {
+            return new PageResult<>(new ArrayList<>(), page, size, 0L);
         }
 
-        if (StringUtils.hasText(category)) {
-            wherePart += " AND r.recipecategory = ? ";
-            args.add(category);
-        }
+        // 第一阶段只取 id：过滤和排序都落在 (recipecategory, 排序键, recipeid) 索引上，可走 index-only scan
+        String sql = """
+            SELECT r.recipeid%s
+            FROM recipes r
+            """.formatted(windowColumn(strategy)) + wherePart + RecipeSort.of(sort).orderBy();
 
-        if (minRating != null) {
-            wherePart += " AND r.aggregatedrating >= ? ";
-            args.add(minRating);
-        }
+        sql += " LIMIT ? OFFSET ? ";
+        long offset = (long) (page - 1) * size;
+        args.add(size);
+        args.add(offset);
 
-        String countSQL = "SELECT COUNT(*) FROM recipes r " + wherePart;
-        long total = jdbcTemplate.queryForObject(countSQL, Long.class, args.toArray());
+        long[] windowTotal = {-1};
+        List<Long> recipeIds = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            if (rowNum == 0 && strategy == PageResult.TotalStrategy.WINDOW) {
+                windowTotal[0] = rs.getLong("total_count");
+            }
+            return rs.getLong("recipeid");
+        }, args.toArray());
 
-        if (total == 0) {
-            return new PageResult<>(new ArrayList<>(), page, size, 0L);
+        total = pageTotal(strategy, total, windowTotal[0], offset, recipeIds.size(), size, () -> countSearch(wherePart, whereArgs));
+        // 第二阶段按 id 回表并关联作者，最多 size 行
+        List<RecipeRecord> records = loadRecipesInOrder(recipeIds);
+        fillIngredients(records);
+        return new PageResult<>(records, page, size, total);
+    }
+
+    @Override
+    public SearchFacets searchFacets(String keyword, String category, Double minRating) {
+        List<Object> args = new ArrayList<>();
+        String wherePart = searchWhere(keyword, category, minRating, args);
+        // 一次扫描同时按分类和评分分组，代替每个分类一条 COUNT(*)
+        String sql = """
+            SELECT r.recipecategory AS category,
+                   CAST(FLOOR(r.aggregatedrating) AS INTEGER) AS rating_bucket,
+                   GROUPING(r.recipecategory) AS by_rating,
+                   COUNT(*) AS hits
+            FROM recipes r
+            """ + wherePart + """
+            GROUP BY GROUPING SETS ((r.recipecategory), (FLOOR(r.aggregatedrating)))
+            """;
+
+        List<SearchFacets.Facet> categories = new ArrayList<>();
+        List<SearchFacets.Facet> ratings = new ArrayList<>();
+        jdbcTemplate.query(sql, rs -> {
+            long hits = rs.getLong("hits");
+            if (rs.getInt("by_rating") == 1) {
+                int bucket = rs.getInt("rating_bucket");
+                ratings.add(new SearchFacets.Facet(rs.wasNull() ? null : String.valueOf(bucket), hits));
+            } else {
+                categories.add(new SearchFacets.Facet(rs.getString("category"), hits));
+            }
+        }, args.toArray());
+
+        categories.sort(Comparator.comparingLong(SearchFacets.Facet::getCount).reversed()
+                .thenComparing(SearchFacets.Facet::getValue, Comparator.nullsLast(Comparator.naturalOrder())));
+        ratings.sort(Comparator.comparing((SearchFacets.Facet f) -> f.getValue() == null ? null : Integer.valueOf(f.getValue()),
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return new SearchFacets(categories, ratings);
+    }
+
+    @Override
+    public PageResult<RecipeRecord> searchRecipesAfter(String keyword, String category, Double minRating, String cursor, Integer size,
+                                                       String sort, PageResult.TotalStrategy totalStrategy) {
+        if (size == null || size <= 0) {
+            throw new IllegalArgumentException("Size must be valid.");
+        }
+        PageResult.TotalStrategy strategy = totalStrategy == null ? PageResult.TotalStrategy.EXACT : totalStrategy;
+        RecipeSort order = RecipeSort.of(sort);
+        SearchCursor position = StringUtils.hasText(cursor) ? SearchCursor.decode(cursor) : null;
+        if (position != null && position.getSort() != order) {
+            throw new IllegalArgumentException("Cursor belongs to another sort order.");
         }
+        int page = position == null ? 1 : position.getPage();
+        // 假定之前每一页都是 size 行
+        long skipped = (long) (page - 1) * size;
+
+        List<Object> args = new ArrayList<>();
+        String wherePart = searchWhere(keyword, category, minRating, args);
+        Object[] whereArgs = args.toArray();
+
+        long total = searchTotal(strategy, wherePart, whereArgs);
 
+        if (position != null) {
+            // 从上一页最后一行 (排序键, recipeid) 之后继续，不再 OFFSET 跳过前面的行
+            wherePart += order.after(position.getKey(), position.getRecipeId(), args);
+        }
+        // 与 loadSearchPage 相同，先取 id 和排序键，再回表
         String sql = """
-            SELECT r.*, u.authorname AS authorName
+            SELECT r.recipeid, %s AS sort_key%s
             FROM recipes r
-            LEFT JOIN users u ON r.authorid = u.authorid
-            """ + wherePart;
-
-        if (StringUtils.hasText(sort)) {
-            switch (sort) {
-                case "rating_desc":
-                    sql += " ORDER BY r.aggregatedrating DESC, r.recipeid DESC ";
-                    break;
-                case "date_desc":
-                    sql += " ORDER BY r.datepublished DESC, r.recipeid DESC ";
-                    break;
-                case "calories_asc":
-                    sql += " ORDER BY r.calories ASC, r.recipeid DESC ";
-                    break;
-                default:
-                    sql += " ORDER BY r.recipeid DESC ";
-                    break;
+            """.formatted(order.column() == null ? "NULL" : order.column(), windowColumn(strategy)) + wherePart + order.orderBy();
+
+        // 多取一行，判断是否还有下一页
+        sql += " LIMIT ? ";
+        args.add(size + 1);
+
+        Object[] lastKey = new Object[1];
+        long[] remaining = {0};
+        List<Long> recipeIds = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            if (rowNum == 0 && strategy == PageResult.TotalStrategy.WINDOW) {
+                // 窗口计数只覆盖游标之后的行
+                remaining[0] = rs.getLong("total_count");
+            }
+            if (rowNum == size - 1) {
+                lastKey[0] = rs.getObject("sort_key");
             }
+            return rs.getLong("recipeid");
+        }, args.toArray());
+
+        String nextCursor = null;
+        if (recipeIds.size() > size) {
+            recipeIds.remove(size);
+            nextCursor = new SearchCursor(order, page + 1, lastKey[0], recipeIds.get(size - 1)).encode();
+        }
+
+        total = pageTotal(strategy, total, skipped + remaining[0], skipped, recipeIds.size(), size, () -> skipped);
+        List<RecipeRecord> records = loadRecipesInOrder(recipeIds);
+        fillIngredients(records);
+        PageResult<RecipeRecord> result = new PageResult<>(records, page, size, total);
+        result.setNextCursor(nextCursor);
+        return result;
+    }
+
+    @Override
+    public PageResult<RecipeRecord> searchRecipesByIngredients(List<String> ingredients, boolean matchAll, Integer page, Integer size) {
+        if (ingredients == null || page == null || page < 1 || size == null || size <= 0) {
+            throw new IllegalArgumentException("Ingredients, page and size must be valid.");
+        }
+        Set<Integer> ingredientIds = new LinkedHashSet<>();
+        boolean unknown = false;
+        for (String name : ingredients) {
+            if (name == null || name.trim().isEmpty()) {
+                continue;
+            }
+            Integer id = ingredientDictionary.find(name.trim());
+            if (id == null) {
+                unknown = true;
+            } else {
+                ingredientIds.add(id);
+            }
+        }
+        if (ingredientIds.isEmpty() && !unknown) {
+            throw new IllegalArgumentException("At least one ingredient is required.");
+        }
+
+        int[] ids = ingredientIds.stream().mapToInt(Integer::intValue).toArray();
+        Roaring64Bitmap matches;
+        if (matchAll) {
+            // 字典里没有的配料没有任何菜谱使用，交集必然为空
+            matches = unknown ? new Roaring64Bitmap() : ingredientIndex.matchAll(ids);
         } else {
-            sql += " ORDER BY r.recipeid DESC ";
+            matches = ingredientIndex.matchAny(ids);
         }
 
-        sql += " LIMIT ? OFFSET ? ";
-        args.add(size);
-        args.add((page - 1) * size);
+        long total = matches.getLongCardinality();
+        long offset = (long) (page - 1) * size;
+        List<Long> recipeIds = new ArrayList<>();
+        if (offset < total) {
+            LongIterator it = matches.getLongIterator();
+            for (long i = 0; i < offset; i++) {
+                it.next();
+            }
+            while (it.hasNext() && recipeIds.size() < size) {
+                recipeIds.add(it.next());
+            }
+        }
+        List<RecipeRecord> records = loadRecipesInOrder(recipeIds);
+        fillIngredients(records);
+        return new PageResult<>(records, page, size, total);
+    }
 
-        List<RecipeRecord> records = jdbcTemplate.query(
-                sql,
-                recipeRecordRowMapper,
-                args.toArray()
-        );
+    @Override
+    public PageResult<RecipeRecord> searchRecipesByNutrition(NutritionFilter filter, Integer page, Integer size) {
+        if (filter == null || page == null || page < 1 || size == null || size <= 0) {
+            throw new IllegalArgumentException("Filter, page and size must be valid.");
+        }
+        validateRange(filter.getCalories());
+        validateRange(filter.getFatContent());
+        validateRange(filter.getSaturatedFatContent());
+        validateRange(filter.getCholesterolContent());
+        validateRange(filter.getSodiumContent());
+        validateRange(filter.getCarbohydrateContent());
+        validateRange(filter.getFiberContent());
+        validateRange(filter.getSugarContent());
+        validateRange(filter.getProteinContent());
+
+        long[] matches = nutritionIndex.match(filter);
+        long offset = (long) (page - 1) * size;
+        List<Long> recipeIds = new ArrayList<>();
+        for (long i = offset; i < matches.length && recipeIds.size() < size; i++) {
+            recipeIds.add(matches[(int) i]);
+        }
+        List<RecipeRecord> records = loadRecipesInOrder(recipeIds);
+        fillIngredients(records);
+        return new PageResult<>(records, page, size, matches.length);
+    }
 
-        if (!records.isEmpty()) {
-            List<Object> recipeIds = records.stream()
-                    .map(RecipeRecord::getRecipeId)
-                    .collect(Collectors.toList());
+    private static void validateRange(NutritionFilter.Range range) {
+        if (range == null) {
+            return;
+        }
+        if ((range.getMin() != null && range.getMin().isNaN()) || (range.getMax() != null && range.getMax().isNaN())) {
+            throw new IllegalArgumentException("Nutrition bounds must be numbers.");
+        }
+        if (range.getMin() != null && range.getMax() != null && range.getMin() > range.getMax()) {
+            throw new IllegalArgumentException("Nutrition range min must not exceed max.");
+        }
+    }
 
-            String inSql = String.join(",", Collections.nCopies(recipeIds.size(), "?"));
-            String ingredientSql = "SELECT recipeid, ingredientpart FROM recipe_ingredients WHERE recipeid IN (" + inSql + ")";
+    private static String[] createdRecipeColumns() {
+        String[] columns = new String[NutritionIndex.COLUMNS.length + 1];
+        columns[0] = "recipeid";
+        System.arraycopy(NutritionIndex.COLUMNS, 0, columns, 1, NutritionIndex.COLUMNS.length);
+        return columns;
+    }
 
-            jdbcTemplate.query(ingredientSql, recipeIds.toArray(), rs -> {
-                Map<Long, List<String>> ingredientsMap = new HashMap<>();
-                while (rs.next()) {
-                    Long rId = rs.getLong("recipeid");
-                    String part = rs.getString("ingredientpart");
-                    ingredientsMap.computeIfAbsent(rId, k -> new ArrayList<>()).add(part);
-                }
+    /**
+     * Loads the recipes of {@code recipeIds} with one query, without their ingredients.
+     * Ids without a recipe are missing from the map.
+     */
+    private Map<Long, RecipeRecord> loadRecipes(Collection<Long> recipeIds) {
+        // 一个数组参数代替 IN (?, ?, ...)，语句文本与 id 个数无关
+        Map<Long, RecipeRecord> byId = new HashMap<>();
+        for (RecipeRecord record : jdbcTemplate.query(RECIPE_SELECT + " WHERE r.recipeid = ANY(?) ",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", recipeIds.toArray())),
+                recipeRecordRowMapper)) {
+            byId.put(record.getRecipeId(), record);
+        }
+        return byId;
+    }
+
+    /**
+     * Loads the recipes of {@code recipeIds} with one query, in the order of the ids.
+     * Ids without a recipe are skipped.
+     */
+    private List<RecipeRecord> loadRecipesInOrder(List<Long> recipeIds) {
+        if (recipeIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, RecipeRecord> byId = loadRecipes(recipeIds);
+        List<RecipeRecord> records = new ArrayList<>(recipeIds.size());
+        for (Long id : recipeIds) {
+            RecipeRecord record = byId.get(id);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
 
-                for (RecipeRecord record : records) {
-                    List<String> ingredients = ingredientsMap.get(record.getRecipeId());
+    /**
+     * Total computed before the page query, or -1 for {@link PageResult.TotalStrategy#WINDOW}.
+     */
+    private long searchTotal(PageResult.TotalStrategy strategy, String wherePart, Object[] whereArgs) {
+        switch (strategy) {
+            case WINDOW:
+                return -1;
+            case ESTIMATE:
+                return estimateSearch(wherePart, whereArgs);
+            case CACHED:
+                // wherePart 决定条件结构，参数已经归一化 (小写、trim)
+                return searchCountCache.get(wherePart + Arrays.toString(whereArgs), () -> countSearch(wherePart, whereArgs));
+            default:
+                return countSearch(wherePart, whereArgs);
+        }
+    }
 
-                    if (ingredients == null) {
-                        record.setRecipeIngredientParts(new String[0]);
-                    } else {
-                        ingredients.sort(String::compareToIgnoreCase);
+    private static String windowColumn(PageResult.TotalStrategy strategy) {
+        return strategy == PageResult.TotalStrategy.WINDOW ? ", COUNT(*) OVER () AS total_count" : "";
+    }
 
-                        record.setRecipeIngredientParts(ingredients.toArray(new String[0]));
-                    }
+    /**
+     * Final total of a page once its rows are known.
+     *
+     * @param total       the result of {@link #searchTotal}
+     * @param windowTotal the total derived from {@code COUNT(*) OVER ()}, only valid when the page has rows
+     * @param offset      number of matching rows before this page
+     * @param emptyTotal  total of {@link PageResult.TotalStrategy#WINDOW} for a page without rows
+     */
+    private static long pageTotal(PageResult.TotalStrategy strategy, long total, long windowTotal, long offset,
+                                  int rows, int size, LongSupplier emptyTotal) {
+        switch (strategy) {
+            case WINDOW:
+                if (rows > 0) {
+                    return windowTotal;
+                }
+                return offset == 0 ? 0 : emptyTotal.getAsLong();
+            case ESTIMATE:
+                // 最后一页 (不满一页) 时总数是确定的
+                if ((rows > 0 && rows < size) || (rows == 0 && offset == 0)) {
+                    return offset + rows;
                 }
-                return null;
-            });
+                return rows == 0 ? Math.min(total, offset) : Math.max(total, offset + rows);
+            default:
+                return total;
         }
-        return new PageResult<>(records, page, size, total);
+    }
+
+    private long countSearch(String wherePart, Object[] whereArgs) {
+        String countSQL = "SELECT COUNT(*) FROM recipes r " + wherePart;
+        return jdbcTemplate.queryForObject(countSQL, Long.class, whereArgs);
+    }
+
+    /**
+     * Reads the row estimate of the top plan node, without executing the query.
+     */
+    private long estimateSearch(String wherePart, Object[] whereArgs) {
+        String explainSQL = "EXPLAIN (FORMAT JSON) SELECT 1 FROM recipes r " + wherePart;
+        String plan = jdbcTemplate.queryForObject(explainSQL, String.class, whereArgs);
+        try {
+            JsonNode rows = OBJECT_MAPPER.readTree(plan).path(0).path("Plan").path("Plan Rows");
+            if (rows.isNumber()) {
+                return rows.asLong();
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to parse EXPLAIN output", e);
+        }
+        log.warn("No row estimate in EXPLAIN output, counting instead: {}", plan);
+        return countSearch(wherePart, whereArgs);
+    }
+
+    /**
+     * Builds the {@code WHERE} clause shared by the search variants, appending the bind values to {@code args}.
+     */
+    private String searchWhere(String keyword, String category, Double minRating, List<Object> args) {
+        String wherePart = " WHERE 1 = 1 ";
+
+        if (StringUtils.hasText(keyword) && searchConfig.getMode() == SearchConfig.Mode.FULLTEXT) {
+            // 与 idx_recipes_fulltext 的表达式一致，plainto_tsquery 把各个词 AND 起来
+            wherePart += " AND " + SearchConfig.FULLTEXT_DOCUMENT + " @@ plainto_tsquery('simple', ?) ";
+            args.add(keyword.trim());
+        } else if (StringUtils.hasText(keyword)) {
+            // TRIGRAM 模式下由 LOWER(name)/LOWER(description) 上的 gin_trgm_ops 索引支持
+            String[] words = keyword.trim().split("\\s+");
+            for (String word : words) {
+                wherePart += " AND (LOWER(r.name) LIKE ? OR LOWER(r.description) LIKE ?) ";
+                String token = "%" + word.toLowerCase() + "%";
+                args.add(token);
+                args.add(token);
+            }
+        }
+
+        if (StringUtils.hasText(category)) {
+            wherePart += " AND r.recipecategory = ? ";
+            args.add(category);
+        }
+
+        if (minRating != null) {
+            wherePart += " AND r.aggregatedrating >= ? ";
+            args.add(minRating);
+        }
+        return wherePart;
+    }
+
+    /**
+     * Loads the ingredients of {@code records} with one grouped query, sorted by {@code String::compareToIgnoreCase}.
+     * Recipes without ingredients get an empty array.
+     */
+    private void fillIngredients(Collection<RecipeRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Map<Long, RecipeRecord> byId = new HashMap<>();
+        for (RecipeRecord record : records) {
+            record.setRecipeIngredientParts(new String[0]);
+            byId.put(record.getRecipeId(), record);
+        }
+        String ingredientSql = """
+                SELECT recipeid, ARRAY_AGG(ingredientid) AS ingredients
+                FROM recipe_ingredients
+                WHERE recipeid = ANY(?)
+                GROUP BY recipeid
+                """;
+        jdbcTemplate.query(ingredientSql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", byId.keySet().toArray())),
+                rs -> {
+                    byId.get(rs.getLong("recipeid"))
+                            .setRecipeIngredientParts(ingredientNames(toIntArray(rs.getArray("ingredients"))));
+                });
     }
 
     @Override
@@ -213,21 +655,32 @@ public class RecipeServiceImpl implements RecipeService {
             throw new IllegalArgumentException("Recipe name cannot be null or empty.");
         }
 
+        // 配料去重，IngredientCount 与实际插入的 recipe_ingredients 行数一致
+        Set<String> uniqueIngredients = new HashSet<>();
+        if (dto.getRecipeIngredientParts() != null) {
+            for (String p : dto.getRecipeIngredientParts()) {
+                if (p != null && !p.trim().isEmpty()) {
+                    uniqueIngredients.add(p.trim());
+                }
+            }
+        }
+
         // 3. 准备 SQL - 显式列出字段，不包含自增的 RecipeId
         String sql = """
         INSERT INTO recipes (
             Name, AuthorId, CookTime, PrepTime, TotalTime, DatePublished, Description, 
             RecipeCategory, AggregatedRating, ReviewCount, Calories, FatContent, 
             SaturatedFatContent, CholesterolContent, SodiumContent, CarbohydrateContent, 
-            FiberContent, SugarContent, ProteinContent, RecipeServings, RecipeYield
-        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            FiberContent, SugarContent, ProteinContent, RecipeServings, RecipeYield, IngredientCount
+        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
     """;
 
         // 4. 使用 KeyHolder 获取数据库自动生成的 ID
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"recipeid"});
+            // 同时取回按 DECIMAL(10,2) 存储后的营养值，供 CaloriePairIndex 和 NutritionIndex 使用
+            PreparedStatement ps = connection.prepareStatement(sql, CREATED_RECIPE_COLUMNS);
 
             // --- 基础信息 ---
             ps.setString(1, dto.getName());
@@ -258,33 +711,32 @@ public class RecipeServiceImpl implements RecipeService {
 
             ps.setInt(20, dto.getRecipeServings());
             ps.setString(21, dto.getRecipeYield());
+            ps.setInt(22, uniqueIngredients.size());
 
             return ps;
         }, keyHolder);
 
-        Number key = keyHolder.getKey();
-        if (key == null) {
+        Map<String, Object> keys = keyHolder.getKeys();
+        if (keys == null || keys.get("recipeid") == null) {
             throw new RuntimeException("Failed to generate recipe ID.");
         }
-        long newRecipeId = key.longValue();
-
-        // 5. 插入配料 (去重 + 批量)
-        if (dto.getRecipeIngredientParts() != null && dto.getRecipeIngredientParts().length > 0) {
-            Set<String> uniqueIngredients = new HashSet<>();
-            for (String p : dto.getRecipeIngredientParts()) {
-                if (p != null && !p.trim().isEmpty()) {
-                    uniqueIngredients.add(p.trim());
-                }
-            }
-
-            if (!uniqueIngredients.isEmpty()) {
-                String ingSql = "INSERT INTO recipe_ingredients (RecipeId, IngredientPart) VALUES (?, ?)";
-                List<Object[]> batchArgs = new ArrayList<>();
-                for (String ingredient : uniqueIngredients) {
-                    batchArgs.add(new Object[]{newRecipeId, ingredient});
-                }
-                jdbcTemplate.batchUpdate(ingSql, batchArgs);
+        long newRecipeId = ((Number) keys.get("recipeid")).longValue();
+        caloriePairIndex.add(newRecipeId, (BigDecimal) keys.get("calories"));
+        nutritionIndex.add(newRecipeId, keys);
+        recipeCache.invalidate(newRecipeId);
+
+        // 5. 插入配料 (批量)
+        if (!uniqueIngredients.isEmpty()) {
+            String ingSql = "INSERT INTO recipe_ingredients (RecipeId, IngredientId) VALUES (?, ?)";
+            List<Object[]> batchArgs = new ArrayList<>();
+            int[] ingredientIds = new int[uniqueIngredients.size()];
+            for (String ingredient : uniqueIngredients) {
+                int id = ingredientDictionary.intern(ingredient);
+                ingredientIds[batchArgs.size()] = id;
+                batchArgs.add(new Object[]{newRecipeId, id});
             }
+            jdbcTemplate.batchUpdate(ingSql, batchArgs);
+            ingredientIndex.add(newRecipeId, ingredientIds);
         }
 
         return newRecipeId;
@@ -294,15 +746,23 @@ public class RecipeServiceImpl implements RecipeService {
     public void deleteRecipe(long recipeId, AuthInfo auth) {
         userService.verifyAuth(auth);
 
-        String selectAuthSQL = "SELECT authorid FROM recipes WHERE recipeid = ?";
-        long authorId;
+        // 顺带取出配料 id，倒排索引只需更新这几个倒排表
+        String selectAuthSQL = """
+                SELECT r.authorid, r.calories,
+                       ARRAY(SELECT ri.ingredientid FROM recipe_ingredients ri WHERE ri.recipeid = r.recipeid) AS ingredients
+                FROM recipes r WHERE r.recipeid = ?
+                """;
+        RecipeOwnership recipe;
         try {
-            authorId = jdbcTemplate.queryForObject(selectAuthSQL, Long.class, recipeId);
+            recipe = jdbcTemplate.queryForObject(selectAuthSQL, (rs, rowNum) -> new RecipeOwnership(
+                    rs.getLong("authorid"),
+                    rs.getBigDecimal("calories"),
+                    toIntArray(rs.getArray("ingredients"))), recipeId);
         } catch (EmptyResultDataAccessException e) {
             return;
         }
 
-        if(authorId != auth.getAuthorId()) {
+        if(recipe.getAuthorId() != auth.getAuthorId()) {
             throw new SecurityException();
         }
         String deleteSQL = """
@@ -310,6 +770,10 @@ public class RecipeServiceImpl implements RecipeService {
                 DELETE FROM recipe_ingredients WHERE recipeid = ?;
                 """;
         jdbcTemplate.update(deleteSQL, recipeId, recipeId);
+        recipeCache.invalidate(recipeId);
+        caloriePairIndex.remove(recipeId, recipe.getCalories());
+        ingredientIndex.remove(recipeId, recipe.getIngredientIds());
+        nutritionIndex.remove(recipeId);
     }
 
     @Override
@@ -374,70 +838,43 @@ public class RecipeServiceImpl implements RecipeService {
                 prepTimeIso,
                 recipeId
         );
+        recipeCache.invalidate(recipeId);
     }
 
     @Override
     public Map<String, Object> getClosestCaloriePair() {
-        String sql = """
-        WITH SortedRecipes AS (
-            SELECT recipeid, calories
-            FROM recipes
-            WHERE calories IS NOT NULL
-            ORDER BY calories ASC
-        ),
-        AdjacentPairs AS (
-            SELECT
-                recipeid AS id1,
-                calories AS cal1,
-                LEAD(recipeid) OVER (ORDER BY calories ASC) AS id2,
-                LEAD(calories) OVER (ORDER BY calories ASC) AS cal2
-            FROM SortedRecipes
-        )
-        SELECT
-            -- 1. 确定 ID (A 是较小的 ID，B 是较大的 ID)
-            CAST(LEAST(id1, id2) AS BIGINT) AS "RecipeA",
-            CAST(GREATEST(id1, id2) AS BIGINT) AS "RecipeB",
-            
-            -- 2. 确定对应的 Calories
-            CAST((CASE WHEN id1 < id2 THEN cal1 ELSE cal2 END) AS FLOAT8) AS "CaloriesA",
-            CAST((CASE WHEN id1 < id2 THEN cal2 ELSE cal1 END) AS FLOAT8) AS "CaloriesB",
-            
-            -- 3. 计算差值 (转为 Java Double)
-            CAST(ABS(cal1 - cal2) AS FLOAT8) AS "Difference"
-        FROM AdjacentPairs
-        WHERE id2 IS NOT NULL
-        ORDER BY
-            "Difference" ASC, -- 规则1: 差值最小
-            "RecipeA" ASC,    -- 规则2: A 的 ID 较小
-            "RecipeB" ASC     -- 规则3: B 的 ID 较小
-        LIMIT 1
-        """;
-
-        try {
-            return jdbcTemplate.queryForMap(sql);
-        } catch (EmptyResultDataAccessException e) {
-            return null;
-        }
+        // 由内存中按 (calories, recipeid) 排序的索引维护，不再每次对全表排序
+        return caloriePairIndex.closestPair();
     }
 
     @Override
     public List<Map<String, Object>> getTop3MostComplexRecipesByIngredients() {
-        String  sql = """
+        return getTopKMostComplexRecipes(3);
+    }
+
+    @Override
+    public List<Map<String, Object>> getTopKMostComplexRecipes(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive.");
+        }
+        // 沿 idx_recipes_ingredient_count 顺序扫描，读到 k 行即停，不再对 recipe_ingredients 全表聚合
+        String sql = """
         SELECT
-            r.recipeid AS "RecipeId",
-            r.name AS "Name",
-            CAST(COUNT(*) AS INTEGER) AS "IngredientCount"
-        FROM recipe_ingredients ri
-        JOIN recipes r ON ri.recipeid = r.recipeid
-        GROUP BY r.recipeid, r.name
-        ORDER BY 
-            "IngredientCount" DESC ,
-            "RecipeId" ASC
-        LIMIT 3
+            recipeid AS "RecipeId",
+            name AS "Name",
+            ingredientcount AS "IngredientCount"
+        FROM recipes
+        WHERE ingredientcount > 0
+        ORDER BY ingredientcount DESC, recipeid ASC
+        LIMIT ?
         """;
-        return jdbcTemplate.queryForList(sql);
+        return jdbcTemplate.queryForList(sql, k);
     }
 
+    @Override
+    public Map<String, Object> getCacheStats() {
+        return recipeCache.stats();
+    }
 
     private Duration parseDurationLenient(String isoString) {
         if (isoString == null || isoString.isBlank()) {
@@ -455,4 +892,14 @@ public class RecipeServiceImpl implements RecipeService {
             return Duration.ZERO;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * What {@link #deleteRecipe} reads before deleting: the owner, and the values the in-memory indexes are keyed by.
+     */
+    @Value
+    private static class RecipeOwnership {
+        long authorId;
+        BigDecimal calories;
+        int[] ingredientIds;
+    }
+}
@@ -7,6 +7,7 @@ import io.sustc.dto.ReviewRecord;
 import io.sustc.service.RecipeService;
 import io.sustc.service.ReviewService;
 import io.sustc.service.UserService;
+import io.sustc.service.impl.cache.RecipeCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -38,6 +39,9 @@ public class ReviewServiceImpl implements ReviewService {
     @Autowired
     private RecipeService recipeService;
 
+    @Autowired
+    private RecipeCache recipeCache;
+
     @Override
     @Transactional
     public long addReview(AuthInfo auth, long recipeId, int rating, String review) {
@@ -81,6 +85,7 @@ public class ReviewServiceImpl implements ReviewService {
         WHERE r.RecipeId = ?
        \s""";
         jdbcTemplate.update(updateStatsSql, recipeId);
+        recipeCache.invalidate(recipeId);
         return newReviewId;
     }
 
@@ -128,6 +133,7 @@ public class ReviewServiceImpl implements ReviewService {
         WHERE r.recipeid = ?
     """;
         jdbcTemplate.update(updateStatsSql, recipeId);
+        recipeCache.invalidate(recipeId);
     }
 
     @Override
@@ -174,6 +180,7 @@ public class ReviewServiceImpl implements ReviewService {
         WHERE r.RecipeId = ?
        \s""";
         jdbcTemplate.update(updateStatsSql, recipeId);
+        recipeCache.invalidate(recipeId);
     }
 
     @Override
@@ -372,6 +379,7 @@ public class ReviewServiceImpl implements ReviewService {
         // 4. 更新数据库
         String updateSql = "UPDATE recipes SET AggregatedRating = ?, ReviewCount = ? WHERE RecipeId = ?";
         jdbcTemplate.update(updateSql, newRating, newCount, recipeId);
+        recipeCache.invalidate(recipeId);
 
         return recipeService.getRecipeById(recipeId);
     }
@@ -0,0 +1,154 @@
+package io.sustc.service.impl.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.sustc.dto.RecipeRecord;
+import io.sustc.service.impl.search.SearchPageCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Read-through cache in front of the single-recipe reads of {@code RecipeService}.
+ * <p>
+ * Writers call {@link #invalidate(long)} for every recipe they change. The entry is dropped at once and
+ * again when the surrounding transaction completes, so a concurrent read that loaded the old row before
+ * the commit does not survive it. Missing recipes are not cached. Every invalidation also clears the
+ * {@link SearchPageCache}.
+ */
+@Component
+@Slf4j
+public class RecipeCache {
+
+    private final RecipeCacheConfig config;
+
+    private final Cache<Long, RecipeRecord> recipes;
+
+    private final Cache<Long, String> names;
+
+    private final SearchPageCache searchPages;
+
+    public RecipeCache(RecipeCacheConfig config, SearchPageCache searchPages) {
+        this.config = config;
+        this.searchPages = searchPages;
+        this.recipes = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        this.names = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return a copy of the cached recipe, loading it with {@code loader} on a miss
+     */
+    public RecipeRecord getRecipe(long recipeId, LongFunction<RecipeRecord> loader) {
+        if (!config.isEnabled()) {
+            return loader.apply(recipeId);
+        }
+        // 缓存中的对象不直接交给调用方，避免被修改
+        return copy(recipes.get(recipeId, loader::apply));
+    }
+
+    /**
+     * Bulk variant of {@link #getRecipe}: copies of the cached recipes, loading all misses with one call
+     * of {@code loader}. Ids without a recipe are absent from the result.
+     */
+    public Map<Long, RecipeRecord> getRecipes(Set<Long> recipeIds, Function<Set<Long>, Map<Long, RecipeRecord>> loader) {
+        if (!config.isEnabled()) {
+            return loader.apply(recipeIds);
+        }
+        Map<Long, RecipeRecord> cached = recipes.getAll(recipeIds, missing -> loader.apply(new HashSet<>(missing)));
+        Map<Long, RecipeRecord> copies = new HashMap<>();
+        cached.forEach((id, record) -> copies.put(id, copy(record)));
+        return copies;
+    }
+
+    public String getName(long recipeId, LongFunction<String> loader) {
+        if (!config.isEnabled()) {
+            return loader.apply(recipeId);
+        }
+        return names.get(recipeId, loader::apply);
+    }
+
+    /**
+     * Drops the recipe now and once more after the current transaction, if any, commits or rolls back.
+     */
+    public void invalidate(long recipeId) {
+        evict(recipeId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(recipeId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Used after bulk changes such as imports and drops.
+     */
+    public void invalidateAll() {
+        recipes.invalidateAll();
+        names.invalidateAll();
+        searchPages.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("recipes", stats(recipes.stats(), recipes.estimatedSize()));
+        stats.put("names", stats(names.stats(), names.estimatedSize()));
+        stats.put("searchPages", stats(searchPages.stats(), searchPages.size()));
+        return stats;
+    }
+
+    private void evict(long recipeId) {
+        recipes.invalidate(recipeId);
+        names.invalidate(recipeId);
+        // 写操作可能改变任意搜索页的成员或顺序，整体清空
+        searchPages.invalidateAll();
+    }
+
+    private static Map<String, Object> stats(CacheStats stats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", size);
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+        return map;
+    }
+
+    /**
+     * Copies a cached record before handing it out, so callers can't modify the cache.
+     */
+    public static RecipeRecord copy(RecipeRecord record) {
+        if (record == null) {
+            return null;
+        }
+        RecipeRecord copy = new RecipeRecord();
+        BeanUtils.copyProperties(record, copy);
+        if (record.getRecipeIngredientParts() != null) {
+            copy.setRecipeIngredientParts(record.getRecipeIngredientParts().clone());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,31 @@
+package io.sustc.service.impl.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "sustc.cache.recipe")
+@Data
+public class RecipeCacheConfig {
+
+    /**
+     * Serve {@code getRecipeById} and {@code getNameFromID} from memory.
+     * When disabled, every read goes to PostgreSQL.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of recipes kept, the least recently used are evicted first.
+     * Names are cached separately, with the same bound.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Entries are reloaded at the latest this long after they were read from the database,
+     * which also bounds the staleness of changes made outside this service.
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
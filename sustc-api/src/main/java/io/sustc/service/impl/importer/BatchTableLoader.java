@@ -0,0 +1,248 @@
+package io.sustc.service.impl.importer;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Imports rows with batched {@code INSERT ... ON CONFLICT DO NOTHING} statements.
+ */
+@Slf4j
+public class BatchTableLoader implements TableLoader {
+
+    private final int batchSize;
+
+    public BatchTableLoader(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void loadUsers(Connection conn, List<UserRecord> users) throws SQLException {
+        String userSQL = "INSERT INTO users(AuthorId, AuthorName, Gender, Age, Followers, Following, Password, IsDeleted) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (AuthorId) DO NOTHING";
+        try (PreparedStatement ps = conn.prepareStatement(userSQL)) {
+            int i = 0;
+            for (UserRecord user : users) {
+                ps.setLong(1, user.getAuthorId());
+                ps.setString(2, user.getAuthorName());
+                ps.setString(3, user.getGender());
+                ps.setInt(4, user.getAge());
+                ps.setInt(5, user.getFollowers());
+                ps.setInt(6, user.getFollowing());
+                ps.setString(7, user.getPassword());
+                ps.setBoolean(8, user.isDeleted());
+                ps.addBatch();
+                if (++i % batchSize == 0) ps.executeBatch(); // 增大 Batch Size
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public void loadRecipes(Connection conn, List<RecipeRecord> recipes) throws SQLException {
+        String recipeSQL = "INSERT INTO recipes (RecipeId, Name, AuthorId, CookTime, PrepTime, TotalTime, DatePublished, Description, RecipeCategory, AggregatedRating, ReviewCount, Calories, FatContent, SaturatedFatContent, CholesterolContent, SodiumContent, CarbohydrateContent, FiberContent, SugarContent, ProteinContent, RecipeServings, RecipeYield, IngredientCount) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (RecipeId) DO NOTHING";
+        try (PreparedStatement ps = conn.prepareStatement(recipeSQL)) {
+            int i = 0;
+            for (RecipeRecord r : recipes) {
+                ps.setLong(1, r.getRecipeId());
+                ps.setString(2, r.getName());
+                ps.setLong(3, r.getAuthorId());
+                ps.setString(4, r.getCookTime());
+                ps.setString(5, r.getPrepTime());
+                ps.setString(6, r.getTotalTime());
+                ps.setTimestamp(7, r.getDatePublished());
+                ps.setString(8, r.getDescription());
+                ps.setString(9, r.getRecipeCategory());
+                ps.setFloat(10, r.getAggregatedRating());
+                ps.setFloat(11, r.getReviewCount());
+                ps.setFloat(12, r.getCalories());
+                ps.setFloat(13, r.getFatContent());
+                ps.setFloat(14, r.getSaturatedFatContent());
+                ps.setFloat(15, r.getCholesterolContent());
+                ps.setFloat(16, r.getSodiumContent());
+                ps.setFloat(17, r.getCarbohydrateContent());
+                ps.setFloat(18, r.getFiberContent());
+                ps.setFloat(19, r.getSugarContent());
+                ps.setFloat(20, r.getProteinContent());
+                ps.setFloat(21, r.getRecipeServings());
+                ps.setString(22, r.getRecipeYield());
+                ps.setInt(23, CopyTableLoader.ingredientCount(r));
+                ps.addBatch();
+                if (++i % batchSize == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public void loadReviews(Connection conn, List<ReviewRecord> reviews) throws SQLException {
+        String reviewSQL = "INSERT INTO reviews (ReviewId, RecipeId, AuthorId, Rating, Review, DateSubmitted, DateModified, LikesCount) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, 0) ON CONFLICT (ReviewId) DO NOTHING";
+        try (PreparedStatement ps = conn.prepareStatement(reviewSQL)) {
+            int i = 0;
+            for (ReviewRecord r : reviews) {
+                ps.setLong(1, r.getReviewId());
+                ps.setLong(2, r.getRecipeId());
+                ps.setLong(3, r.getAuthorId());
+                // 修正：数据库 Rating 是 INT，这里强转 int 避免 float 精度问题
+                ps.setInt(4, (int) r.getRating());
+                ps.setString(5, r.getReview());
+                ps.setTimestamp(6, r.getDateSubmitted());
+                ps.setTimestamp(7, r.getDateModified());
+                ps.addBatch();
+                if (++i % batchSize == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public void loadRecipeIngredients(Connection conn, List<RecipeRecord> recipes) throws SQLException {
+        Set<String> names = new HashSet<>();
+        for (RecipeRecord r : recipes) {
+            if (r.getRecipeIngredientParts() != null) {
+                names.addAll(Arrays.asList(r.getRecipeIngredientParts()));
+            }
+        }
+        names.remove(null);
+
+        String dictionarySQL = "INSERT INTO ingredients (Name) VALUES (?) ON CONFLICT (Name) DO NOTHING";
+        try (PreparedStatement ps = conn.prepareStatement(dictionarySQL)) {
+            int i = 0;
+            for (String name : names) {
+                ps.setString(1, name);
+                ps.addBatch();
+                if (++i % batchSize == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+
+        String ingredientsSQL = "INSERT INTO recipe_ingredients (RecipeId, IngredientId) " +
+                "SELECT ?, IngredientId FROM ingredients WHERE Name = ? ON CONFLICT DO NOTHING";
+        try (PreparedStatement ps = conn.prepareStatement(ingredientsSQL)) {
+            int i = 0;
+            for (RecipeRecord r : recipes) {
+                if (r.getRecipeIngredientParts() == null) {
+                    continue;
+                }
+                Set<String> uniqueIngredients = new HashSet<>(Arrays.asList(r.getRecipeIngredientParts()));
+                uniqueIngredients.remove(null);
+                for (String ingredient : uniqueIngredients) {
+                    ps.setLong(1, r.getRecipeId());
+                    ps.setString(2, ingredient);
+                    ps.addBatch();
+                    if (++i % batchSize == 0) ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Stages the likes into an unconstrained temp table, then keeps those of known reviews and users
+     * with a single join instead of two {@code EXISTS} probes per row.
+     */
+    @Override
+    public void loadReviewLikes(Connection conn, List<ReviewRecord> reviews) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS stage_review_likes (ReviewId BIGINT, AuthorId BIGINT)");
+            stmt.execute("TRUNCATE stage_review_likes");
+        }
+        String stageSQL = "INSERT INTO stage_review_likes (ReviewId, AuthorId) VALUES (?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(stageSQL)) {
+            int i = 0;
+            for (ReviewRecord r : reviews) {
+                if (r.getLikes() == null) {
+                    continue;
+                }
+                for (long likeAuthorId : r.getLikes()) {
+                    ps.setLong(1, r.getReviewId());
+                    ps.setLong(2, likeAuthorId);
+                    ps.addBatch();
+                    if (++i % batchSize == 0) ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            int merged = stmt.executeUpdate("""
+                        INSERT INTO review_likes (ReviewId, AuthorId)
+                        SELECT DISTINCT s.ReviewId, s.AuthorId
+                        FROM stage_review_likes s
+                        JOIN reviews r ON r.ReviewId = s.ReviewId
+                        JOIN users u ON u.AuthorId = s.AuthorId
+                        ON CONFLICT DO NOTHING
+                    """);
+            log.debug("Merged {} review likes", merged);
+            // 连接会回到连接池，临时表不留给下一个使用者
+            stmt.execute("DROP TABLE stage_review_likes");
+        }
+    }
+
+    @Override
+    public void refreshLikesCount(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            log.info("Updating LikesCount in bulk...");
+            stmt.execute("""
+                        UPDATE reviews r
+                        SET LikesCount = s.cnt
+                        FROM (
+                            SELECT ReviewId, COUNT(*) as cnt
+                            FROM review_likes
+                            GROUP BY ReviewId
+                        ) s
+                        WHERE r.ReviewId = s.ReviewId
+                    """);
+        }
+    }
+
+    /**
+     * Same staging load as {@link #loadReviewLikes}; follows of unknown users and self follows are dropped by the merge.
+     */
+    @Override
+    public void loadUserFollows(Connection conn, List<UserRecord> users) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS stage_user_follows (FollowerId BIGINT, FollowingId BIGINT)");
+            stmt.execute("TRUNCATE stage_user_follows");
+        }
+        String stageSQL = "INSERT INTO stage_user_follows (FollowerId, FollowingId) VALUES (?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(stageSQL)) {
+            int i = 0;
+            for (UserRecord user : users) {
+                if (user.getFollowingUsers() != null) {
+                    for (long followingId : user.getFollowingUsers()) {
+                        ps.setLong(1, user.getAuthorId());
+                        ps.setLong(2, followingId);
+                        ps.addBatch();
+                        if (++i % batchSize == 0) ps.executeBatch();
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            int merged = stmt.executeUpdate("""
+                        INSERT INTO user_follows (FollowerId, FollowingId)
+                        SELECT DISTINCT s.FollowerId, s.FollowingId
+                        FROM stage_user_follows s
+                        JOIN users f ON f.AuthorId = s.FollowerId
+                        JOIN users g ON g.AuthorId = s.FollowingId
+                        WHERE s.FollowerId <> s.FollowingId
+                        ON CONFLICT DO NOTHING
+                    """);
+            log.debug("Merged {} user follows", merged);
+            stmt.execute("DROP TABLE stage_user_follows");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.sustc.service.impl.importer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hands the records of a source to a loader a bounded chunk at a time,
+ * so a streamed source never has to be held in memory as a whole.
+ * <p>
+ * The chunk list is reused between calls, tasks must not keep a reference to it.
+ */
+@Slf4j
+public final class Chunks {
+
+    @FunctionalInterface
+    public interface ChunkTask<T> {
+        void accept(List<T> chunk) throws SQLException;
+    }
+
+    private Chunks() {
+    }
+
+    /**
+     * Calls {@code task} for consecutive chunks of at most {@code chunkSize} records.
+     * A {@link List} source is cut into {@code subList} views without copying.
+     *
+     * @return the number of records read from the source
+     */
+    public static <T> long forEach(Iterable<T> source, int chunkSize, ChunkTask<T> task) throws SQLException {
+        return forEach(source, chunkSize, 0, task);
+    }
+
+    /**
+     * Same as {@link #forEach(Iterable, int, ChunkTask)}, but first skips {@code skip} records,
+     * e.g. the ones a previous run already imported.
+     *
+     * @return the number of records read from the source, including the skipped ones
+     */
+    public static <T> long forEach(Iterable<T> source, int chunkSize, long skip, ChunkTask<T> task) throws SQLException {
+        int size = Math.max(1, chunkSize);
+        if (source instanceof List) {
+            List<T> list = (List<T>) source;
+            for (int from = (int) Math.min(skip, list.size()); from < list.size(); from += size) {
+                task.accept(list.subList(from, Math.min(list.size(), from + size)));
+            }
+            return list.size();
+        }
+        long total = 0;
+        List<T> chunk = new ArrayList<>(Math.min(size, 1 << 16));
+        Iterator<T> it = source.iterator();
+        try {
+            for (; total < skip && it.hasNext(); total++) {
+                it.next();
+            }
+            while (it.hasNext()) {
+                chunk.add(it.next());
+                if (chunk.size() == size) {
+                    task.accept(chunk);
+                    total += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                task.accept(chunk);
+                total += chunk.size();
+            }
+        } finally {
+            // 文件流式来源在中途失败时也要释放
+            if (it instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) it).close();
+                } catch (Exception e) {
+                    log.warn("Failed to close import source", e);
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,154 @@
+package io.sustc.service.impl.importer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Encodes rows in the CSV flavour of {@code COPY ... FROM STDIN} and streams them to the server.
+ * <p>
+ * Non-null strings are always quoted, so an empty string stays distinguishable from {@code NULL}
+ * (an unquoted empty field).
+ */
+final class CopyRowWriter implements AutoCloseable {
+
+    private static final int FLUSH_THRESHOLD = 1 << 20;
+
+    /**
+     * PostgreSQL casts {@code float4} to {@code numeric} through {@code %.6g} (FLT_DIG digits).
+     * {@code setFloat} goes through that cast, so we round the same way before the column's scale applies.
+     */
+    private static final MathContext FLOAT4_DIGITS = new MathContext(6, RoundingMode.HALF_EVEN);
+
+    private final CopyIn copyIn;
+
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 4096);
+
+    private boolean rowStart = true;
+
+    private CopyRowWriter(CopyIn copyIn) {
+        this.copyIn = copyIn;
+    }
+
+    /**
+     * Starts a {@code COPY <table> (<columns>) FROM STDIN WITH (FORMAT csv)} on the connection.
+     */
+    static CopyRowWriter open(Connection conn, String table, String columns) throws SQLException {
+        String sql = "COPY " + table + " (" + columns + ") FROM STDIN WITH (FORMAT csv)";
+        return new CopyRowWriter(conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql));
+    }
+
+    CopyRowWriter add(long value) {
+        separator();
+        buffer.append(value);
+        return this;
+    }
+
+    CopyRowWriter add(Integer value) {
+        separator();
+        if (value != null) {
+            buffer.append(value.intValue());
+        }
+        return this;
+    }
+
+    CopyRowWriter add(boolean value) {
+        separator();
+        buffer.append(value ? 't' : 'f');
+        return this;
+    }
+
+    CopyRowWriter add(String value) {
+        separator();
+        if (value == null) {
+            return this;
+        }
+        buffer.append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+        return this;
+    }
+
+    CopyRowWriter add(Timestamp value) {
+        separator();
+        if (value != null) {
+            // 与 setTimestamp 一致：写入 JVM 时区下的本地时间
+            buffer.append(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a float destined for a {@code DECIMAL} column.
+     */
+    CopyRowWriter addNumeric(Float value) {
+        separator();
+        if (value == null) {
+            return this;
+        }
+        float f = value;
+        if (Float.isNaN(f)) {
+            buffer.append("NaN");
+        } else if (Float.isInfinite(f)) {
+            buffer.append(f > 0 ? "Infinity" : "-Infinity");
+        } else {
+            buffer.append(new BigDecimal(f).round(FLOAT4_DIGITS).toPlainString());
+        }
+        return this;
+    }
+
+    void endRow() throws SQLException {
+        buffer.append('\n');
+        rowStart = true;
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the remaining rows and completes the COPY.
+     *
+     * @return the number of rows the server reports as copied
+     */
+    long finish() throws SQLException {
+        flush();
+        return copyIn.endCopy();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+    private void separator() {
+        if (rowStart) {
+            rowStart = false;
+        } else {
+            buffer.append(',');
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,277 @@
+package io.sustc.service.impl.importer;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports rows through the COPY protocol.
+ * <p>
+ * COPY has no {@code ON CONFLICT}, so the filtering the batch engine does on the server
+ * (repeated user, recipe and review ids, duplicate relation rows, likes and follows of unknown reviews or users)
+ * is done here in memory, against primitive sets of the ids already copied. No row costs a server-side lookup.
+ * As with {@code ON CONFLICT DO NOTHING}, the first record of a repeated id wins, and only its ingredients,
+ * likes and follows are copied.
+ * {@code reviews.LikesCount} is computed while the reviews are streamed,
+ * which saves the bulk {@code UPDATE} afterwards. Ingredient ids are assigned here as well,
+ * from a dictionary of the ingredients copied so far.
+ */
+@Slf4j
+public class CopyTableLoader implements TableLoader {
+
+    private final LongHashSet userIds = new LongHashSet();
+
+    private final LongHashSet recipeIds = new LongHashSet();
+
+    private final LongHashSet reviewIds = new LongHashSet();
+
+    // 以下三个集合记录关系已写入的记录，重复 id 的后续记录不再写关系
+    private final LongHashSet ingredientRecipeIds = new LongHashSet();
+
+    private final LongHashSet likedReviewIds = new LongHashSet();
+
+    private final LongHashSet followerIds = new LongHashSet();
+
+    private final Map<String, Integer> ingredientIds = new HashMap<>();
+
+    private int nextIngredientId = 1;
+
+    @Override
+    public void restore(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            restoreIds(stmt, "SELECT AuthorId FROM users", userIds);
+            restoreIds(stmt, "SELECT RecipeId FROM recipes", recipeIds);
+            restoreIds(stmt, "SELECT ReviewId FROM reviews", reviewIds);
+            restoreIds(stmt, "SELECT DISTINCT RecipeId FROM recipe_ingredients", ingredientRecipeIds);
+            restoreIds(stmt, "SELECT DISTINCT ReviewId FROM review_likes", likedReviewIds);
+            restoreIds(stmt, "SELECT DISTINCT FollowerId FROM user_follows", followerIds);
+            try (ResultSet rs = stmt.executeQuery("SELECT IngredientId, Name FROM ingredients")) {
+                while (rs.next()) {
+                    ingredientIds.put(rs.getString(2), rs.getInt(1));
+                    nextIngredientId = Math.max(nextIngredientId, rs.getInt(1) + 1);
+                }
+            }
+        }
+        log.info("Restored {} user ids, {} recipe ids, {} review ids and {} ingredients",
+                userIds.size(), recipeIds.size(), reviewIds.size(), ingredientIds.size());
+    }
+
+    private static void restoreIds(Statement stmt, String sql, LongHashSet ids) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+    }
+
+    @Override
+    public void loadUsers(Connection conn, List<UserRecord> users) throws SQLException {
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "users", USER_COLUMNS)) {
+            for (UserRecord user : users) {
+                if (userIds.add(user.getAuthorId())) {
+                    writeUser(w, user);
+                }
+            }
+            log.debug("Copied {} users", w.finish());
+        }
+    }
+
+    @Override
+    public void loadRecipes(Connection conn, List<RecipeRecord> recipes) throws SQLException {
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "recipes", RECIPE_COLUMNS)) {
+            for (RecipeRecord r : recipes) {
+                if (recipeIds.add(r.getRecipeId())) {
+                    writeRecipe(w, r);
+                }
+            }
+            log.debug("Copied {} recipes", w.finish());
+        }
+    }
+
+    @Override
+    public void loadReviews(Connection conn, List<ReviewRecord> reviews) throws SQLException {
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "reviews", REVIEW_COLUMNS)) {
+            for (ReviewRecord r : reviews) {
+                if (reviewIds.add(r.getReviewId())) {
+                    writeReview(w, r, validLikes(r).length);
+                }
+            }
+            log.debug("Copied {} reviews", w.finish());
+        }
+    }
+
+    @Override
+    public void loadRecipeIngredients(Connection conn, List<RecipeRecord> recipes) throws SQLException {
+        // 新配料先写入字典，recipe_ingredients 引用的 id 必须已存在
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "ingredients", "IngredientId, Name")) {
+            for (RecipeRecord r : recipes) {
+                if (r.getRecipeIngredientParts() == null) {
+                    continue;
+                }
+                for (String ingredient : r.getRecipeIngredientParts()) {
+                    if (ingredient != null && !ingredientIds.containsKey(ingredient)) {
+                        int id = nextIngredientId++;
+                        ingredientIds.put(ingredient, id);
+                        w.add(id).add(ingredient).endRow();
+                    }
+                }
+            }
+            log.debug("Copied {} ingredients", w.finish());
+        }
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "recipe_ingredients", "RecipeId, IngredientId")) {
+            for (RecipeRecord r : recipes) {
+                if (r.getRecipeIngredientParts() == null || !ingredientRecipeIds.add(r.getRecipeId())) {
+                    continue;
+                }
+                Set<String> uniqueIngredients = new HashSet<>();
+                for (String ingredient : r.getRecipeIngredientParts()) {
+                    if (ingredient != null && uniqueIngredients.add(ingredient)) {
+                        w.add(r.getRecipeId()).add(ingredientIds.get(ingredient)).endRow();
+                    }
+                }
+            }
+            log.debug("Copied {} recipe ingredients", w.finish());
+        }
+    }
+
+    @Override
+    public void loadReviewLikes(Connection conn, List<ReviewRecord> reviews) throws SQLException {
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "review_likes", "ReviewId, AuthorId")) {
+            for (ReviewRecord r : reviews) {
+                if (!reviewIds.contains(r.getReviewId()) || !likedReviewIds.add(r.getReviewId())) {
+                    continue;
+                }
+                for (long likeAuthorId : validLikes(r)) {
+                    w.add(r.getReviewId()).add(likeAuthorId).endRow();
+                }
+            }
+            log.debug("Copied {} review likes", w.finish());
+        }
+    }
+
+    @Override
+    public void loadUserFollows(Connection conn, List<UserRecord> users) throws SQLException {
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "user_follows", "FollowerId, FollowingId")) {
+            for (UserRecord user : users) {
+                if (user.getFollowingUsers() == null || !followerIds.add(user.getAuthorId())) {
+                    continue;
+                }
+                for (long followingId : distinctKnownUsers(user.getFollowingUsers(), user.getAuthorId())) {
+                    w.add(user.getAuthorId()).add(followingId).endRow();
+                }
+            }
+            log.debug("Copied {} user follows", w.finish());
+        }
+    }
+
+    static final String USER_COLUMNS = "AuthorId, AuthorName, Gender, Age, Followers, Following, Password, IsDeleted";
+
+    static final String RECIPE_COLUMNS = "RecipeId, Name, AuthorId, CookTime, PrepTime, TotalTime, DatePublished, Description, RecipeCategory, " +
+            "AggregatedRating, ReviewCount, Calories, FatContent, SaturatedFatContent, CholesterolContent, " +
+            "SodiumContent, CarbohydrateContent, FiberContent, SugarContent, ProteinContent, RecipeServings, RecipeYield, " +
+            "IngredientCount";
+
+    static final String REVIEW_COLUMNS = "ReviewId, RecipeId, AuthorId, Rating, Review, DateSubmitted, DateModified, LikesCount";
+
+    static void writeUser(CopyRowWriter w, UserRecord user) throws SQLException {
+        w.add(user.getAuthorId())
+                .add(user.getAuthorName())
+                .add(user.getGender())
+                .add(user.getAge())
+                .add(user.getFollowers())
+                .add(user.getFollowing())
+                .add(user.getPassword())
+                .add(user.isDeleted())
+                .endRow();
+    }
+
+    static void writeRecipe(CopyRowWriter w, RecipeRecord r) throws SQLException {
+        w.add(r.getRecipeId())
+                .add(r.getName())
+                .add(r.getAuthorId())
+                .add(r.getCookTime())
+                .add(r.getPrepTime())
+                .add(r.getTotalTime())
+                .add(r.getDatePublished())
+                .add(r.getDescription())
+                .add(r.getRecipeCategory())
+                .addNumeric(r.getAggregatedRating())
+                .add(r.getReviewCount())
+                .addNumeric(r.getCalories())
+                .addNumeric(r.getFatContent())
+                .addNumeric(r.getSaturatedFatContent())
+                .addNumeric(r.getCholesterolContent())
+                .addNumeric(r.getSodiumContent())
+                .addNumeric(r.getCarbohydrateContent())
+                .addNumeric(r.getFiberContent())
+                .addNumeric(r.getSugarContent())
+                .addNumeric(r.getProteinContent())
+                .add(String.valueOf(r.getRecipeServings()))
+                .add(r.getRecipeYield())
+                .add(ingredientCount(r))
+                .endRow();
+    }
+
+    /**
+     * The number of {@code recipe_ingredients} rows the recipe gets: its distinct ingredient parts.
+     */
+    static int ingredientCount(RecipeRecord r) {
+        String[] parts = r.getRecipeIngredientParts();
+        if (parts == null) {
+            return 0;
+        }
+        Set<String> unique = new HashSet<>(Arrays.asList(parts));
+        unique.remove(null);
+        return unique.size();
+    }
+
+    static void writeReview(CopyRowWriter w, ReviewRecord r, int likesCount) throws SQLException {
+        w.add(r.getReviewId())
+                .add(r.getRecipeId())
+                .add(r.getAuthorId())
+                // 数据库 Rating 是 INT
+                .add((int) r.getRating())
+                .add(r.getReview())
+                .add(r.getDateSubmitted())
+                .add(r.getDateModified())
+                .add(likesCount)
+                .endRow();
+    }
+
+    /**
+     * The distinct likers of a review that exist in {@code users}.
+     */
+    private long[] validLikes(ReviewRecord r) {
+        return r.getLikes() == null ? new long[0] : distinctKnownUsers(r.getLikes(), Long.MIN_VALUE);
+    }
+
+    /**
+     * The distinct ids of {@code ids} that exist in {@code users}, except {@code exclude}.
+     * Sorts a copy instead of hashing, the arrays are short.
+     */
+    private long[] distinctKnownUsers(long[] ids, long exclude) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            long id = sorted[i];
+            boolean duplicate = i > 0 && id == sorted[i - 1];
+            if (!duplicate && id != exclude && userIds.contains(id)) {
+                sorted[n++] = id;
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+}
@@ -0,0 +1,257 @@
+package io.sustc.service.impl.importer;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies a delta of users, recipes and reviews to an already imported database, in the caller's transaction.
+ * <p>
+ * The records are copied into temp tables and merged with set-based statements. Only rows whose
+ * columns actually differ are updated. A delta record carries the complete relation set of its row
+ * (the likes of a review, the followings of a user), so those sets are replaced.
+ * The like and follow triggers skip their counter updates meanwhile, through the transaction-local
+ * {@code sustc.skip_counters} setting, so no table lock is taken. {@code LikesCount}, {@code AggregatedRating},
+ * {@code ReviewCount} and the follower counters are recomputed once, for the affected keys only.
+ */
+@Slf4j
+public class DeltaImporter {
+
+    public void importDelta(Connection conn,
+                            List<ReviewRecord> reviewRecords,
+                            List<UserRecord> userRecords,
+                            List<RecipeRecord> recipeRecords) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stage(conn, stmt, reviewRecords, userRecords, recipeRecords);
+
+            // 计数在最后按受影响的键统一重算，逐行触发器只会重复劳动；
+            // 用事务级设置让触发器直接返回，不用 DISABLE TRIGGER (会锁住整张表直到提交)
+            stmt.execute("SET LOCAL sustc.skip_counters = 'on'");
+
+            // 受影响的食谱：本次评论的新旧 RecipeId
+            stmt.execute("CREATE TEMP TABLE delta_recipe_keys ON COMMIT DROP AS " +
+                    "SELECT RecipeId FROM stage_reviews UNION " +
+                    "SELECT r.RecipeId FROM reviews r JOIN stage_reviews s ON s.ReviewId = r.ReviewId");
+            // 受影响的用户：本次用户，及其新旧关注对象
+            stmt.execute("CREATE TEMP TABLE delta_user_keys ON COMMIT DROP AS " +
+                    "SELECT AuthorId FROM stage_users UNION " +
+                    "SELECT FollowingId FROM stage_user_follows UNION " +
+                    "SELECT f.FollowingId FROM user_follows f JOIN stage_users s ON s.AuthorId = f.FollowerId");
+
+            int users = stmt.executeUpdate("""
+                        INSERT INTO users (AuthorId, AuthorName, Gender, Age, Password, IsDeleted)
+                        SELECT AuthorId, AuthorName, Gender, Age, Password, IsDeleted FROM stage_users
+                        ON CONFLICT (AuthorId) DO UPDATE SET
+                            AuthorName = EXCLUDED.AuthorName, Gender = EXCLUDED.Gender, Age = EXCLUDED.Age,
+                            Password = EXCLUDED.Password, IsDeleted = EXCLUDED.IsDeleted
+                        WHERE (users.AuthorName, users.Gender, users.Age, users.Password, users.IsDeleted)
+                            IS DISTINCT FROM (EXCLUDED.AuthorName, EXCLUDED.Gender, EXCLUDED.Age, EXCLUDED.Password, EXCLUDED.IsDeleted)
+                    """);
+            // AggregatedRating/ReviewCount 由评论推导，已有食谱不覆盖
+            int recipes = stmt.executeUpdate("""
+                        INSERT INTO recipes (RecipeId, Name, AuthorId, CookTime, PrepTime, TotalTime, DatePublished,
+                            Description, RecipeCategory, AggregatedRating, ReviewCount, Calories, FatContent,
+                            SaturatedFatContent, CholesterolContent, SodiumContent, CarbohydrateContent, FiberContent,
+                            SugarContent, ProteinContent, RecipeServings, RecipeYield, IngredientCount)
+                        SELECT RecipeId, Name, AuthorId, CookTime, PrepTime, TotalTime, DatePublished,
+                            Description, RecipeCategory, AggregatedRating, ReviewCount, Calories, FatContent,
+                            SaturatedFatContent, CholesterolContent, SodiumContent, CarbohydrateContent, FiberContent,
+                            SugarContent, ProteinContent, RecipeServings, RecipeYield, IngredientCount
+                        FROM stage_recipes
+                        ON CONFLICT (RecipeId) DO UPDATE SET
+                            Name = EXCLUDED.Name, AuthorId = EXCLUDED.AuthorId, CookTime = EXCLUDED.CookTime,
+                            PrepTime = EXCLUDED.PrepTime, TotalTime = EXCLUDED.TotalTime,
+                            DatePublished = EXCLUDED.DatePublished, Description = EXCLUDED.Description,
+                            RecipeCategory = EXCLUDED.RecipeCategory, Calories = EXCLUDED.Calories,
+                            FatContent = EXCLUDED.FatContent, SaturatedFatContent = EXCLUDED.SaturatedFatContent,
+                            CholesterolContent = EXCLUDED.CholesterolContent, SodiumContent = EXCLUDED.SodiumContent,
+                            CarbohydrateContent = EXCLUDED.CarbohydrateContent, FiberContent = EXCLUDED.FiberContent,
+                            SugarContent = EXCLUDED.SugarContent, ProteinContent = EXCLUDED.ProteinContent,
+                            RecipeServings = EXCLUDED.RecipeServings, RecipeYield = EXCLUDED.RecipeYield,
+                            IngredientCount = EXCLUDED.IngredientCount
+                        WHERE (recipes.Name, recipes.AuthorId, recipes.CookTime, recipes.PrepTime, recipes.TotalTime,
+                                recipes.DatePublished, recipes.Description, recipes.RecipeCategory, recipes.Calories,
+                                recipes.FatContent, recipes.SaturatedFatContent, recipes.CholesterolContent,
+                                recipes.SodiumContent, recipes.CarbohydrateContent, recipes.FiberContent,
+                                recipes.SugarContent, recipes.ProteinContent, recipes.RecipeServings, recipes.RecipeYield,
+                                recipes.IngredientCount)
+                            IS DISTINCT FROM (EXCLUDED.Name, EXCLUDED.AuthorId, EXCLUDED.CookTime, EXCLUDED.PrepTime,
+                                EXCLUDED.TotalTime, EXCLUDED.DatePublished, EXCLUDED.Description, EXCLUDED.RecipeCategory,
+                                EXCLUDED.Calories, EXCLUDED.FatContent, EXCLUDED.SaturatedFatContent,
+                                EXCLUDED.CholesterolContent, EXCLUDED.SodiumContent, EXCLUDED.CarbohydrateContent,
+                                EXCLUDED.FiberContent, EXCLUDED.SugarContent, EXCLUDED.ProteinContent,
+                                EXCLUDED.RecipeServings, EXCLUDED.RecipeYield, EXCLUDED.IngredientCount)
+                    """);
+            int reviews = stmt.executeUpdate("""
+                        INSERT INTO reviews (ReviewId, RecipeId, AuthorId, Rating, Review, DateSubmitted, DateModified, LikesCount)
+                        SELECT ReviewId, RecipeId, AuthorId, Rating, Review, DateSubmitted, DateModified, 0 FROM stage_reviews
+                        ON CONFLICT (ReviewId) DO UPDATE SET
+                            RecipeId = EXCLUDED.RecipeId, AuthorId = EXCLUDED.AuthorId, Rating = EXCLUDED.Rating,
+                            Review = EXCLUDED.Review, DateSubmitted = EXCLUDED.DateSubmitted, DateModified = EXCLUDED.DateModified
+                        WHERE (reviews.RecipeId, reviews.AuthorId, reviews.Rating, reviews.Review,
+                                reviews.DateSubmitted, reviews.DateModified)
+                            IS DISTINCT FROM (EXCLUDED.RecipeId, EXCLUDED.AuthorId, EXCLUDED.Rating, EXCLUDED.Review,
+                                EXCLUDED.DateSubmitted, EXCLUDED.DateModified)
+                    """);
+
+            // 关系表：以 delta 中的完整集合替换
+            stmt.executeUpdate("""
+                        INSERT INTO ingredients (Name)
+                        SELECT DISTINCT IngredientPart FROM stage_recipe_ingredients
+                        WHERE IngredientPart IS NOT NULL
+                        ON CONFLICT (Name) DO NOTHING
+                    """);
+            stmt.executeUpdate("""
+                        DELETE FROM recipe_ingredients i
+                        USING stage_recipes s
+                        WHERE i.RecipeId = s.RecipeId
+                          AND NOT EXISTS (SELECT 1 FROM stage_recipe_ingredients n
+                                          JOIN ingredients g ON g.Name = n.IngredientPart
+                                          WHERE n.RecipeId = i.RecipeId AND g.IngredientId = i.IngredientId)
+                    """);
+            stmt.executeUpdate("""
+                        INSERT INTO recipe_ingredients (RecipeId, IngredientId)
+                        SELECT DISTINCT n.RecipeId, g.IngredientId
+                        FROM stage_recipe_ingredients n
+                        JOIN ingredients g ON g.Name = n.IngredientPart
+                        ON CONFLICT DO NOTHING
+                    """);
+            stmt.executeUpdate("""
+                        DELETE FROM review_likes l
+                        USING stage_reviews s
+                        WHERE l.ReviewId = s.ReviewId
+                          AND NOT EXISTS (SELECT 1 FROM stage_review_likes n
+                                          WHERE n.ReviewId = l.ReviewId AND n.AuthorId = l.AuthorId)
+                    """);
+            stmt.executeUpdate("""
+                        INSERT INTO review_likes (ReviewId, AuthorId)
+                        SELECT DISTINCT s.ReviewId, s.AuthorId
+                        FROM stage_review_likes s
+                        JOIN users u ON u.AuthorId = s.AuthorId
+                        ON CONFLICT DO NOTHING
+                    """);
+            stmt.executeUpdate("""
+                        DELETE FROM user_follows f
+                        USING stage_users s
+                        WHERE f.FollowerId = s.AuthorId
+                          AND NOT EXISTS (SELECT 1 FROM stage_user_follows n
+                                          WHERE n.FollowerId = f.FollowerId AND n.FollowingId = f.FollowingId)
+                    """);
+            stmt.executeUpdate("""
+                        INSERT INTO user_follows (FollowerId, FollowingId)
+                        SELECT DISTINCT s.FollowerId, s.FollowingId
+                        FROM stage_user_follows s
+                        JOIN users u ON u.AuthorId = s.FollowingId
+                        WHERE s.FollowerId <> s.FollowingId
+                        ON CONFLICT DO NOTHING
+                    """);
+
+            stmt.execute("SET LOCAL sustc.skip_counters = 'off'");
+
+            int likeCounts = stmt.executeUpdate("""
+                        UPDATE reviews r
+                        SET LikesCount = (SELECT COUNT(*) FROM review_likes l WHERE l.ReviewId = r.ReviewId)
+                        WHERE r.ReviewId IN (SELECT ReviewId FROM stage_reviews)
+                    """);
+            int ratings = stmt.executeUpdate("""
+                        UPDATE recipes p
+                        SET AggregatedRating = s.avg_rating, ReviewCount = s.cnt
+                        FROM (
+                            SELECT k.RecipeId, ROUND(AVG(r.Rating), 2) AS avg_rating, COUNT(r.ReviewId) AS cnt
+                            FROM delta_recipe_keys k
+                            LEFT JOIN reviews r ON r.RecipeId = k.RecipeId
+                            GROUP BY k.RecipeId
+                        ) s
+                        WHERE p.RecipeId = s.RecipeId
+                          AND (p.AggregatedRating, p.ReviewCount) IS DISTINCT FROM (s.avg_rating, s.cnt)
+                    """);
+            int followCounts = stmt.executeUpdate("""
+                        UPDATE users u
+                        SET Followers = (SELECT COUNT(*) FROM user_follows f WHERE f.FollowingId = u.AuthorId),
+                            Following = (SELECT COUNT(*) FROM user_follows f WHERE f.FollowerId = u.AuthorId)
+                        WHERE u.AuthorId IN (SELECT AuthorId FROM delta_user_keys)
+                    """);
+
+            stmt.execute("SELECT setval('recipes_recipeid_seq', (SELECT MAX(RecipeId) FROM recipes))");
+            stmt.execute("SELECT setval('reviews_reviewid_seq', (SELECT MAX(ReviewId) FROM reviews))");
+
+            log.info("Delta applied: {} users, {} recipes, {} reviews changed; recounted {} reviews, {} recipes, {} users",
+                    users, recipes, reviews, likeCounts, ratings, followCounts);
+        }
+    }
+
+    private void stage(Connection conn, Statement stmt,
+                       List<ReviewRecord> reviewRecords,
+                       List<UserRecord> userRecords,
+                       List<RecipeRecord> recipeRecords) throws SQLException {
+        // LIKE 只复制列和 NOT NULL，不带默认值和约束
+        stmt.execute("CREATE TEMP TABLE stage_users (LIKE users) ON COMMIT DROP");
+        stmt.execute("CREATE TEMP TABLE stage_recipes (LIKE recipes) ON COMMIT DROP");
+        stmt.execute("CREATE TEMP TABLE stage_reviews (LIKE reviews) ON COMMIT DROP");
+        // 配料以文本暂存，合并时再映射到 ingredients 字典的 id
+        stmt.execute("CREATE TEMP TABLE stage_recipe_ingredients (RecipeId BIGINT, IngredientPart VARCHAR(500)) ON COMMIT DROP");
+        stmt.execute("CREATE TEMP TABLE stage_review_likes (LIKE review_likes) ON COMMIT DROP");
+        stmt.execute("CREATE TEMP TABLE stage_user_follows (LIKE user_follows) ON COMMIT DROP");
+
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "stage_users", CopyTableLoader.USER_COLUMNS)) {
+            for (UserRecord user : userRecords) {
+                CopyTableLoader.writeUser(w, user);
+            }
+            w.finish();
+        }
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "stage_user_follows", "FollowerId, FollowingId")) {
+            for (UserRecord user : userRecords) {
+                if (user.getFollowingUsers() != null) {
+                    for (long followingId : user.getFollowingUsers()) {
+                        w.add(user.getAuthorId()).add(followingId).endRow();
+                    }
+                }
+            }
+            w.finish();
+        }
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "stage_recipes", CopyTableLoader.RECIPE_COLUMNS)) {
+            for (RecipeRecord r : recipeRecords) {
+                CopyTableLoader.writeRecipe(w, r);
+            }
+            w.finish();
+        }
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "stage_recipe_ingredients", "RecipeId, IngredientPart")) {
+            for (RecipeRecord r : recipeRecords) {
+                if (r.getRecipeIngredientParts() != null) {
+                    Set<String> uniqueIngredients = new LinkedHashSet<>(Arrays.asList(r.getRecipeIngredientParts()));
+                    for (String ingredient : uniqueIngredients) {
+                        w.add(r.getRecipeId()).add(ingredient).endRow();
+                    }
+                }
+            }
+            w.finish();
+        }
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "stage_reviews", CopyTableLoader.REVIEW_COLUMNS)) {
+            for (ReviewRecord r : reviewRecords) {
+                CopyTableLoader.writeReview(w, r, 0);
+            }
+            w.finish();
+        }
+        try (CopyRowWriter w = CopyRowWriter.open(conn, "stage_review_likes", "ReviewId, AuthorId")) {
+            for (ReviewRecord r : reviewRecords) {
+                if (r.getLikes() != null) {
+                    for (long likeAuthorId : r.getLikes()) {
+                        w.add(r.getReviewId()).add(likeAuthorId).endRow();
+                    }
+                }
+            }
+            w.finish();
+        }
+        stmt.execute("ANALYZE stage_users, stage_recipes, stage_reviews, " +
+                "stage_recipe_ingredients, stage_review_likes, stage_user_follows");
+    }
+}
@@ -0,0 +1,69 @@
+package io.sustc.service.impl.importer;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "sustc.import")
+@Data
+public class ImportConfig {
+
+    /**
+     * The engine used to write the imported rows into PostgreSQL.
+     */
+    private Engine engine = Engine.COPY;
+
+    /**
+     * Number of rows sent per JDBC batch.
+     * Only used by the {@link Engine#BATCH} engine.
+     */
+    private int batchSize = 2000;
+
+    /**
+     * Number of records handed to the loader at a time.
+     * Bounds the memory of streamed imports, each chunk is written with its own COPY or batch.
+     */
+    private int chunkSize = 50_000;
+
+    /**
+     * Load independent tables concurrently, each on its own connection and transaction.
+     * When disabled, the whole import runs in a single transaction.
+     */
+    private boolean parallel = true;
+
+    /**
+     * Maximum number of tables loaded at the same time in parallel mode.
+     * Keep it below the Hikari {@code maximum-pool-size}.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Commit every chunk and record the progress in {@code import_progress}, so an interrupted import
+     * resumes where it stopped instead of starting over. Steps always run on their own connections
+     * in this mode, sequentially unless {@link #parallel} is set.
+     */
+    private boolean checkpoint = false;
+
+    /**
+     * Create bare tables, load them, and only then add primary keys, foreign keys and indexes.
+     * Requires the {@link Engine#COPY} engine, since {@code ON CONFLICT} needs the unique indexes.
+     */
+    private boolean deferConstraints = true;
+
+    /**
+     * {@code maintenance_work_mem} used by the deferred primary key and index builds.
+     */
+    private String maintenanceWorkMem = "256MB";
+
+    public enum Engine {
+        /**
+         * {@code INSERT ... ON CONFLICT DO NOTHING} with {@code addBatch}.
+         */
+        BATCH,
+        /**
+         * Stream rows through the COPY protocol.
+         */
+        COPY,
+    }
+}
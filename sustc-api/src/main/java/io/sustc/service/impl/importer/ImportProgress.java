@@ -0,0 +1,153 @@
+package io.sustc.service.impl.importer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checkpoints of a resumable import, kept in the {@code import_progress} table.
+ * <p>
+ * A step records how many source rows it has written, in the same transaction as the rows,
+ * and is marked completed in the transaction that finishes it. A restarted import skips completed
+ * steps and the rows already written by the others. The table is dropped once the import succeeds.
+ */
+@Slf4j
+public class ImportProgress {
+
+    private static final long REPORT_INTERVAL_MILLIS = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Long> rowsDone = new ConcurrentHashMap<>();
+
+    private final Map<String, Boolean> completed = new ConcurrentHashMap<>();
+
+    public ImportProgress(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return whether an interrupted import left an {@code import_progress} table to resume from
+     */
+    public static boolean exists(JdbcTemplate jdbcTemplate) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass('import_progress') IS NOT NULL", Boolean.class));
+    }
+
+    /**
+     * Creates the progress table if needed and reads the checkpoints of a previous run.
+     *
+     * @return whether a previous run left checkpoints to resume from
+     */
+    public boolean open() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS import_progress (" +
+                "Step VARCHAR(255) PRIMARY KEY, RowsDone BIGINT NOT NULL DEFAULT 0, " +
+                "Completed BOOLEAN NOT NULL DEFAULT FALSE, UpdatedAt TIMESTAMP NOT NULL DEFAULT now())");
+        jdbcTemplate.query("SELECT Step, RowsDone, Completed FROM import_progress", rs -> {
+            rowsDone.put(rs.getString(1), rs.getLong(2));
+            completed.put(rs.getString(1), rs.getBoolean(3));
+        });
+        completed.forEach((step, done) -> log.info("Resuming import: step {} {}", step,
+                done ? "completed" : "at row " + rowsDone.get(step)));
+        return !rowsDone.isEmpty();
+    }
+
+    public boolean isCompleted(String step) {
+        return completed.getOrDefault(step, false);
+    }
+
+    public long rowsDone(String step) {
+        return rowsDone.getOrDefault(step, 0L);
+    }
+
+    /**
+     * Records the rows written so far, on the step's connection. Takes effect when the caller commits.
+     */
+    public void saveRows(Connection conn, String step, long rows) throws SQLException {
+        save(conn, step, rows, false);
+    }
+
+    public void saveCompleted(Connection conn, String step) throws SQLException {
+        save(conn, step, rowsDone(step), true);
+    }
+
+    /**
+     * Drops the progress table after a successful import.
+     */
+    public void finish() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS import_progress");
+    }
+
+    /**
+     * Starts measuring the throughput of a step that resumes at {@code startRow}.
+     *
+     * @param totalRows the number of source rows, or -1 if the source can't tell
+     */
+    public Meter meter(String step, long startRow, long totalRows) {
+        return new Meter(step, startRow, totalRows);
+    }
+
+    private void save(Connection conn, String step, long rows, boolean done) throws SQLException {
+        String sql = "INSERT INTO import_progress (Step, RowsDone, Completed, UpdatedAt) VALUES (?, ?, ?, now()) " +
+                "ON CONFLICT (Step) DO UPDATE SET RowsDone = EXCLUDED.RowsDone, Completed = EXCLUDED.Completed, UpdatedAt = now()";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, step);
+            ps.setLong(2, rows);
+            ps.setBoolean(3, done);
+            ps.executeUpdate();
+        }
+        // 仅影响本进程内的判断，事务回滚后重启会重新读取
+        rowsDone.put(step, rows);
+        completed.put(step, done);
+    }
+
+    /**
+     * Logs rows/s and the ETA of a step at most every {@value #REPORT_INTERVAL_MILLIS} ms.
+     */
+    public static final class Meter {
+
+        private final String step;
+
+        private final long startRow;
+
+        private final long totalRows;
+
+        private final long startMillis = System.currentTimeMillis();
+
+        private long lastReport = startMillis;
+
+        private Meter(String step, long startRow, long totalRows) {
+            this.step = step;
+            this.startRow = startRow;
+            this.totalRows = totalRows;
+        }
+
+        public void update(long rows) {
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= REPORT_INTERVAL_MILLIS) {
+                lastReport = now;
+                report(rows, now);
+            }
+        }
+
+        public void done(long rows) {
+            report(rows, System.currentTimeMillis());
+        }
+
+        private void report(long rows, long now) {
+            double seconds = Math.max(1, now - startMillis) / 1000.0;
+            double rate = (rows - startRow) / seconds;
+            if (totalRows < 0) {
+                log.info("Import step {}: {} rows, {} rows/s", step, rows, Math.round(rate));
+            } else {
+                long eta = rate > 0 ? Math.round((totalRows - rows) / rate) : -1;
+                log.info("Import step {}: {}/{} rows, {} rows/s, ETA {} s", step, rows, totalRows, Math.round(rate), eta);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.sustc.service.impl.importer;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs import steps that depend on each other, e.g. {@code recipes} must wait for {@code users}
+ * because of the foreign key.
+ * <p>
+ * Steps form a DAG: a step may only depend on steps added before it. {@link #runParallel} starts a step
+ * as soon as all of its dependencies are committed, each step on its own pooled connection and transaction.
+ * Start and finish times of every step are recorded, see {@link #logTimings()}.
+ */
+@Slf4j
+public class ImportScheduler {
+
+    @FunctionalInterface
+    public interface Task {
+        void run(Connection conn) throws SQLException;
+    }
+
+    @Value
+    private static class Step {
+        String name;
+        Task task;
+        List<String> dependsOn;
+    }
+
+    @Value
+    private static class Timing {
+        String name;
+        long startMillis;
+        long endMillis;
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+
+    private long origin;
+
+    private ImportProgress progress;
+
+    /**
+     * Makes {@link #runParallel} skip the steps a previous run completed, and mark each step completed
+     * in the transaction that finishes it.
+     */
+    public ImportScheduler checkpoint(ImportProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    public ImportScheduler add(String name, Task task, String... dependsOn) {
+        for (String dep : dependsOn) {
+            if (!steps.containsKey(dep)) {
+                throw new IllegalArgumentException("Step " + name + " depends on unknown step " + dep);
+            }
+        }
+        if (steps.putIfAbsent(name, new Step(name, task, List.of(dependsOn))) != null) {
+            throw new IllegalArgumentException("Duplicate step " + name);
+        }
+        return this;
+    }
+
+    /**
+     * Runs every step in insertion order on the given connection, leaving transaction handling to the caller.
+     * Checkpoints are ignored.
+     */
+    public void runSequential(Connection conn) throws SQLException {
+        origin = System.currentTimeMillis();
+        for (Step step : steps.values()) {
+            long start = System.currentTimeMillis();
+            step.getTask().run(conn);
+            record(step, start);
+        }
+    }
+
+    /**
+     * Runs independent steps concurrently, each on a new connection from {@code dataSource} that is
+     * committed when the step finishes. Blocks until every step is done.
+     *
+     * @throws RuntimeException wrapping the first failure; steps depending on a failed step are not run
+     */
+    public void runParallel(DataSource dataSource, int parallelism) {
+        origin = System.currentTimeMillis();
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "import-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+            for (Step step : steps.values()) {
+                CompletableFuture<?>[] deps = step.getDependsOn().stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(step.getName(), CompletableFuture.allOf(deps)
+                        .thenRunAsync(() -> runOnOwnConnection(dataSource, step), executor));
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Logs when each step started and finished relative to the first step.
+     * The step that finished last is the end of the critical path and bounds the total time.
+     */
+    public void logTimings() {
+        List<Timing> sorted = new ArrayList<>(timings.values());
+        sorted.sort(Comparator.comparingLong(Timing::getEndMillis));
+        for (Timing t : sorted) {
+            log.info("Import step {}: {} ms (started at +{} ms, finished at +{} ms)",
+                    t.getName(), t.getEndMillis() - t.getStartMillis(), t.getStartMillis() - origin, t.getEndMillis() - origin);
+        }
+        if (!sorted.isEmpty()) {
+            log.info("Import bounded by step {}", sorted.get(sorted.size() - 1).getName());
+        }
+    }
+
+    private void runOnOwnConnection(DataSource dataSource, Step step) {
+        if (progress != null && progress.isCompleted(step.getName())) {
+            log.info("Import step {} already completed, skipped", step.getName());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                step.getTask().run(conn);
+                if (progress != null) {
+                    progress.saveCompleted(conn, step.getName());
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Import step " + step.getName() + " failed", e);
+        }
+        record(step, start);
+    }
+
+    private void record(Step step, long start) {
+        timings.put(step.getName(), new Timing(step.getName(), start, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,53 @@
+package io.sustc.service.impl.importer;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Writes import records into the tables created by {@code DatabaseServiceImpl}.
+ * <p>
+ * Callers must load the tables in foreign key order: users, recipes, reviews,
+ * then the relation tables.
+ */
+public interface TableLoader {
+
+    void loadUsers(Connection conn, List<UserRecord> users) throws SQLException;
+
+    void loadRecipes(Connection conn, List<RecipeRecord> recipes) throws SQLException;
+
+    void loadReviews(Connection conn, List<ReviewRecord> reviews) throws SQLException;
+
+    /**
+     * Interns the ingredient parts of each recipe into {@code ingredients} and links them to the recipe.
+     * Null parts are skipped.
+     */
+    void loadRecipeIngredients(Connection conn, List<RecipeRecord> recipes) throws SQLException;
+
+    /**
+     * Loads the likes of each review. Likes pointing to an unknown review or user are skipped.
+     */
+    void loadReviewLikes(Connection conn, List<ReviewRecord> reviews) throws SQLException;
+
+    /**
+     * Loads the follows of each user. Follows of unknown users and self follows are skipped.
+     */
+    void loadUserFollows(Connection conn, List<UserRecord> users) throws SQLException;
+
+    /**
+     * Rebuilds in-memory state from the rows a previous, interrupted import already committed,
+     * before a resumed import continues.
+     */
+    default void restore(Connection conn) throws SQLException {
+    }
+
+    /**
+     * Brings {@code reviews.LikesCount} in line with {@code review_likes} after the likes are loaded.
+     */
+    default void refreshLikesCount(Connection conn) throws SQLException {
+    }
+}
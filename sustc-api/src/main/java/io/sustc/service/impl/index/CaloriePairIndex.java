@@ -0,0 +1,249 @@
+package io.sustc.service.impl.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory answer of {@code getClosestCaloriePair}.
+ * <p>
+ * Keeps the recipes with calories sorted by {@code (calories, recipeId)} in two primitive arrays, and the best
+ * adjacent pair by {@code (difference, smaller id, larger id)}. Calories are {@code DECIMAL(10,2)}, so they are
+ * held exactly as cents. A lookup is O(1), an insert or delete is a binary search plus an array shift; only
+ * removing the best pair rescans the arrays.
+ * <p>
+ * Loaded from the database on first use. Changes are applied after their transaction commits and are
+ * idempotent, so a change racing with the initial load is neither lost nor applied twice.
+ */
+@Component
+@Slf4j
+public class CaloriePairIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long[] cents;
+
+    private long[] ids;
+
+    private int size;
+
+    private boolean loaded;
+
+    private Pair best;
+
+    public CaloriePairIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the pair in the format of {@code RecipeService#getClosestCaloriePair()},
+     * or {@code null} if less than two recipes have calories
+     */
+    public synchronized Map<String, Object> closestPair() {
+        ensureLoaded();
+        return best == null ? null : best.toMap();
+    }
+
+    public void add(long recipeId, BigDecimal calories) {
+        if (calories != null) {
+            long value = toCents(calories);
+            AfterCommit.run(() -> insert(recipeId, value));
+        }
+    }
+
+    public void remove(long recipeId, BigDecimal calories) {
+        if (calories != null) {
+            long value = toCents(calories);
+            AfterCommit.run(() -> delete(recipeId, value));
+        }
+    }
+
+    /**
+     * Drops the index after bulk changes, it is reloaded on the next lookup.
+     */
+    public synchronized void invalidate() {
+        cents = null;
+        ids = null;
+        size = 0;
+        best = null;
+        loaded = false;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        cents = new long[1024];
+        ids = new long[1024];
+        size = 0;
+        jdbcTemplate.query("SELECT recipeid, calories FROM recipes WHERE calories IS NOT NULL ORDER BY calories, recipeid", rs -> {
+            if (size == cents.length) {
+                grow();
+            }
+            ids[size] = rs.getLong(1);
+            cents[size] = toCents(rs.getBigDecimal(2));
+            size++;
+        });
+        loaded = true;
+        rescan();
+        log.debug("Loaded {} recipe calories in {} ms", size, System.currentTimeMillis() - start);
+    }
+
+    private synchronized void insert(long recipeId, long value) {
+        if (!loaded) {
+            return;
+        }
+        int pos = search(value, recipeId);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        if (size == cents.length) {
+            grow();
+        }
+        System.arraycopy(cents, pos, cents, pos + 1, size - pos);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        cents[pos] = value;
+        ids[pos] = recipeId;
+        size++;
+
+        // 新元素把 (pos-1, pos+1) 拆成两对；被拆掉的恰好是最优对时需要重新扫描
+        if (pos > 0 && pos < size - 1 && best != null && best.connects(ids[pos - 1], ids[pos + 1])) {
+            rescan();
+            return;
+        }
+        if (pos > 0) {
+            best = Pair.min(best, pair(pos - 1, pos));
+        }
+        if (pos < size - 1) {
+            best = Pair.min(best, pair(pos, pos + 1));
+        }
+    }
+
+    private synchronized void delete(long recipeId, long value) {
+        if (!loaded) {
+            return;
+        }
+        int pos = search(value, recipeId);
+        if (pos < 0) {
+            return;
+        }
+        Pair bridged = pos > 0 && pos < size - 1 ? pair(pos - 1, pos + 1) : null;
+        System.arraycopy(cents, pos + 1, cents, pos, size - pos - 1);
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        size--;
+
+        if (best != null && (best.recipeA == recipeId || best.recipeB == recipeId)) {
+            rescan();
+        } else {
+            best = Pair.min(best, bridged);
+        }
+    }
+
+    private void rescan() {
+        best = null;
+        for (int i = 0; i + 1 < size; i++) {
+            best = Pair.min(best, pair(i, i + 1));
+        }
+    }
+
+    /**
+     * Binary search by {@code (cents, id)}, returning {@code -(insertion point) - 1} if absent.
+     */
+    private int search(long value, long recipeId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = cents[mid] != value ? Long.compare(cents[mid], value) : Long.compare(ids[mid], recipeId);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private Pair pair(int i, int j) {
+        return new Pair(ids[i], cents[i], ids[j], cents[j]);
+    }
+
+    private void grow() {
+        cents = Arrays.copyOf(cents, cents.length << 1);
+        ids = Arrays.copyOf(ids, ids.length << 1);
+    }
+
+    private static long toCents(BigDecimal calories) {
+        return calories.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Two recipes adjacent in calorie order, A being the one with the smaller id.
+     */
+    private static final class Pair {
+
+        final long recipeA;
+
+        final long recipeB;
+
+        final long centsA;
+
+        final long centsB;
+
+        final long difference;
+
+        Pair(long id1, long cents1, long id2, long cents2) {
+            boolean firstIsA = id1 < id2;
+            this.recipeA = firstIsA ? id1 : id2;
+            this.recipeB = firstIsA ? id2 : id1;
+            this.centsA = firstIsA ? cents1 : cents2;
+            this.centsB = firstIsA ? cents2 : cents1;
+            this.difference = Math.abs(cents1 - cents2);
+        }
+
+        static Pair min(Pair a, Pair b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            return a.compareTo(b) <= 0 ? a : b;
+        }
+
+        int compareTo(Pair other) {
+            if (difference != other.difference) {
+                return Long.compare(difference, other.difference);
+            }
+            if (recipeA != other.recipeA) {
+                return Long.compare(recipeA, other.recipeA);
+            }
+            return Long.compare(recipeB, other.recipeB);
+        }
+
+        boolean connects(long id1, long id2) {
+            return recipeA == Math.min(id1, id2) && recipeB == Math.max(id1, id2);
+        }
+
+        Map<String, Object> toMap() {
+            // 与原 SQL 的 CAST(... AS FLOAT8) 一致：cents / 100.0 是最接近该十进制数的 double
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("RecipeA", recipeA);
+            map.put("RecipeB", recipeB);
+            map.put("CaloriesA", centsA / 100.0);
+            map.put("CaloriesB", centsB / 100.0);
+            map.put("Difference", difference / 100.0);
+            return map;
+        }
+    }
+}
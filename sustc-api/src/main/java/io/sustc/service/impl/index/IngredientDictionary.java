@@ -0,0 +1,139 @@
+package io.sustc.service.impl.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the {@code ingredients(IngredientId, Name)} dictionary.
+ * <p>
+ * {@code recipe_ingredients} stores ingredient ids; reads resolve them to names here instead of joining
+ * {@code ingredients}. Ingredients are never deleted outside of a full drop, so a cached mapping stays valid
+ * until {@link #invalidate()}. Loaded from the database on first use; ingredients created by a transaction
+ * are cached after it commits, and ids missing from the cache are fetched on demand.
+ */
+@Component
+@Slf4j
+public class IngredientDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    public IngredientDictionary(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns the id of {@code name}, inserting it into {@code ingredients} if it is new.
+     * Call it inside the transaction that references the id.
+     */
+    public int intern(String name) {
+        Integer id = lookup(name);
+        if (id != null) {
+            return id;
+        }
+        // DO UPDATE 保证并发插入同名配料时也能 RETURNING 到 id
+        Integer created = jdbcTemplate.queryForObject("""
+                INSERT INTO ingredients (Name) VALUES (?)
+                ON CONFLICT (Name) DO UPDATE SET Name = EXCLUDED.Name
+                RETURNING IngredientId
+                """, Integer.class, name);
+        AfterCommit.run(() -> put(created, name));
+        return created;
+    }
+
+    /**
+     * @return the id of {@code name}, or {@code null} if it is not in the dictionary
+     */
+    public Integer find(String name) {
+        ensureLoaded();
+        return lookup(name);
+    }
+
+    /**
+     * @return the names of {@code ingredientIds}, in the same order
+     */
+    public String[] names(int[] ingredientIds) {
+        ensureLoaded();
+        String[] result = new String[ingredientIds.length];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < ingredientIds.length; i++) {
+            result[i] = names.get(ingredientIds[i]);
+            if (result[i] == null) {
+                missing.add(ingredientIds[i]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            loadMissing(missing);
+            for (int i = 0; i < ingredientIds.length; i++) {
+                if (result[i] == null) {
+                    result[i] = names.get(ingredientIds[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Drops the cached dictionary after bulk changes, it is reloaded on the next lookup.
+     */
+    public synchronized void invalidate() {
+        ids.clear();
+        names.clear();
+        loaded = false;
+    }
+
+    private synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        jdbcTemplate.query("SELECT IngredientId, Name FROM ingredients",
+                rs -> {
+                    put(rs.getInt(1), rs.getString(2));
+                });
+        loaded = true;
+        log.debug("Loaded {} ingredients in {} ms", names.size(), System.currentTimeMillis() - start);
+    }
+
+    private void loadMissing(List<Integer> missing) {
+        jdbcTemplate.query("SELECT IngredientId, Name FROM ingredients WHERE IngredientId = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", missing.toArray())),
+                rs -> {
+                    put(rs.getInt(1), rs.getString(2));
+                });
+    }
+
+    private Integer lookup(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        List<Integer> existing = jdbcTemplate.queryForList(
+                "SELECT IngredientId FROM ingredients WHERE Name = ?", Integer.class, name);
+        if (existing.isEmpty()) {
+            return null;
+        }
+        put(existing.get(0), name);
+        return existing.get(0);
+    }
+
+    private void put(int id, String name) {
+        ids.put(name, id);
+        names.put(id, name);
+    }
+}
@@ -0,0 +1,223 @@
+package io.sustc.service.impl.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index from ingredient id to the compressed bitmap of the recipes using it.
+ * <p>
+ * Answers "recipes with all / any of these ingredients" by intersecting or merging a few Roaring bitmaps,
+ * instead of probing {@code recipe_ingredients} once per ingredient. Intersections start from the rarest
+ * ingredient, so the work is bounded by its posting list.
+ * <p>
+ * Built from {@code recipe_ingredients} in the background at startup and after every import, into a new map
+ * that replaces the old one once complete, so lookups never hold the index lock during a build; a lookup
+ * arriving before the index is built waits for it. Changes are applied after their transaction commits and
+ * are idempotent; changes committed during a build are replayed on the new map, so none is lost.
+ */
+@Component
+@Slf4j
+public class IngredientIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // 同一时间只有一个构建，查询在这里等待正在进行的构建
+    private final Object buildLock = new Object();
+
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ingredient-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Map<Integer, Roaring64Bitmap> postings = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    private long generation;
+
+    // 构建期间提交的修改，构建完成后在新的倒排表上重放
+    private List<Consumer<Map<Integer, Roaring64Bitmap>>> pending;
+
+    public IngredientIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Builds the index once the application has started. {@code ApplicationReadyEvent} would only fire after
+     * the shell exits, since the shell runs as an application runner.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmUp() {
+        builder.execute(this::buildQuietly);
+    }
+
+    /**
+     * @return the recipes using every ingredient of {@code ingredientIds}; empty if the array is empty
+     */
+    public Roaring64Bitmap matchAll(int[] ingredientIds) {
+        ensureBuilt();
+        synchronized (this) {
+            List<Roaring64Bitmap> lists = new ArrayList<>(ingredientIds.length);
+            for (int id : ingredientIds) {
+                Roaring64Bitmap recipes = postings.get(id);
+                if (recipes == null) {
+                    return new Roaring64Bitmap();
+                }
+                lists.add(recipes);
+            }
+            if (lists.isEmpty()) {
+                return new Roaring64Bitmap();
+            }
+            // 从最短的倒排表开始求交，中间结果只会越来越小
+            lists.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+            Roaring64Bitmap result = lists.get(0).clone();
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.and(lists.get(i));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return the recipes using at least one ingredient of {@code ingredientIds}
+     */
+    public Roaring64Bitmap matchAny(int[] ingredientIds) {
+        ensureBuilt();
+        synchronized (this) {
+            Roaring64Bitmap result = new Roaring64Bitmap();
+            for (int id : ingredientIds) {
+                Roaring64Bitmap recipes = postings.get(id);
+                if (recipes != null) {
+                    result.or(recipes);
+                }
+            }
+            return result;
+        }
+    }
+
+    public void add(long recipeId, int[] ingredientIds) {
+        AfterCommit.run(() -> apply(map -> {
+            for (int id : ingredientIds) {
+                map.computeIfAbsent(id, k -> new Roaring64Bitmap()).addLong(recipeId);
+            }
+        }));
+    }
+
+    /**
+     * @param ingredientIds the ingredients the recipe had, only their posting lists are touched
+     */
+    public void remove(long recipeId, int[] ingredientIds) {
+        AfterCommit.run(() -> apply(map -> {
+            for (int id : ingredientIds) {
+                Roaring64Bitmap recipes = map.get(id);
+                if (recipes != null) {
+                    recipes.removeLong(recipeId);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Drops the index after bulk changes and rebuilds it in the background.
+     */
+    public void rebuild() {
+        invalidate();
+        builder.execute(this::buildQuietly);
+    }
+
+    /**
+     * Drops the index, it is rebuilt on the next lookup.
+     */
+    public synchronized void invalidate() {
+        postings = new HashMap<>();
+        loaded = false;
+        // 进行中的构建读到的可能是旧数据，完成后丢弃
+        generation++;
+    }
+
+    private synchronized void apply(Consumer<Map<Integer, Roaring64Bitmap>> change) {
+        if (pending != null) {
+            pending.add(change);
+        }
+        if (loaded) {
+            change.accept(postings);
+        }
+    }
+
+    private void ensureBuilt() {
+        if (loaded) {
+            return;
+        }
+        synchronized (buildLock) {
+            while (!loaded) {
+                build();
+            }
+        }
+    }
+
+    private void buildQuietly() {
+        try {
+            ensureBuilt();
+        } catch (DataAccessException e) {
+            // 表还未创建 (尚未导入)，第一次查询时再构建
+            log.debug("Ingredient index not built: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads {@code recipe_ingredients} into a new map outside the index lock, then replays the changes
+     * committed meanwhile and installs it, unless the index was invalidated in between.
+     */
+    private void build() {
+        long buildGeneration;
+        synchronized (this) {
+            buildGeneration = generation;
+            pending = new ArrayList<>();
+        }
+        long start = System.currentTimeMillis();
+        Map<Integer, Roaring64Bitmap> built = new HashMap<>();
+        long[] pairs = {0};
+        try {
+            // 按 recipeid 有序追加，Roaring 的写入最快
+            jdbcTemplate.query("SELECT ingredientid, recipeid FROM recipe_ingredients ORDER BY recipeid", rs -> {
+                built.computeIfAbsent(rs.getInt(1), k -> new Roaring64Bitmap()).addLong(rs.getLong(2));
+                pairs[0]++;
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+            }
+            throw e;
+        }
+        for (Roaring64Bitmap recipes : built.values()) {
+            recipes.runOptimize();
+        }
+        synchronized (this) {
+            if (generation == buildGeneration) {
+                for (Consumer<Map<Integer, Roaring64Bitmap>> change : pending) {
+                    change.accept(built);
+                }
+                postings = built;
+                loaded = true;
+            }
+            pending = null;
+        }
+        log.debug("Indexed {} recipe ingredients of {} ingredients in {} ms",
+                pairs[0], built.size(), System.currentTimeMillis() - start);
+    }
+}
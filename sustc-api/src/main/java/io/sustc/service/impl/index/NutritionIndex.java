@@ -0,0 +1,258 @@
+package io.sustc.service.impl.index;
+
+import io.sustc.dto.NutritionFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Columnar copy of the nine nutrition columns of {@code recipes}, for multi-predicate range filters.
+ * <p>
+ * Each column is a primitive {@code double[]}, {@code NaN} standing for SQL {@code NULL}. Rows are grouped into
+ * blocks of {@value #BLOCK_ROWS} with the min and max of every column per block; a filter skips the blocks whose
+ * min/max cannot satisfy one of its ranges and scans only the columns it constrains in the others. Rows are
+ * loaded in calories order, so calorie ranges prune most blocks, and the other columns prune where they
+ * correlate with calories.
+ * <p>
+ * New recipes are appended to the last block, deleted ones are marked in a bitmap. Loaded from the database on
+ * first use and reloaded once half of the rows are deleted. Changes are applied after their transaction commits
+ * and are idempotent, like {@link CaloriePairIndex}.
+ */
+@Component
+@Slf4j
+public class NutritionIndex {
+
+    /**
+     * The indexed columns, in the order of {@link #ranges(NutritionFilter)}.
+     */
+    public static final String[] COLUMNS = {
+            "calories", "fatcontent", "saturatedfatcontent", "cholesterolcontent", "sodiumcontent",
+            "carbohydratecontent", "fibercontent", "sugarcontent", "proteincontent"
+    };
+
+    private static final int BLOCK_ROWS = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long[] ids;
+
+    private double[][] values;
+
+    private double[][] blockMin;
+
+    private double[][] blockMax;
+
+    private final BitSet removed = new BitSet();
+
+    // recipeId -> 最新一行的位置，单条写入时不必扫描
+    private LongIntHashMap rows;
+
+    private int size;
+
+    private boolean loaded;
+
+    public NutritionIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the ids of the recipes matching every range of {@code filter}, in ascending order
+     */
+    public synchronized long[] match(NutritionFilter filter) {
+        ensureLoaded();
+        NutritionFilter.Range[] ranges = ranges(filter);
+        int[] active = new int[COLUMNS.length];
+        double[] low = new double[COLUMNS.length];
+        double[] high = new double[COLUMNS.length];
+        int activeCount = 0;
+        for (int c = 0; c < COLUMNS.length; c++) {
+            if (ranges[c] != null && (ranges[c].getMin() != null || ranges[c].getMax() != null)) {
+                active[activeCount++] = c;
+                low[c] = ranges[c].getMin() == null ? Double.NEGATIVE_INFINITY : ranges[c].getMin();
+                high[c] = ranges[c].getMax() == null ? Double.POSITIVE_INFINITY : ranges[c].getMax();
+            }
+        }
+
+        long[] result = new long[64];
+        int count = 0;
+        int blocks = blockCount();
+        for (int b = 0; b < blocks; b++) {
+            // 块内全为 NULL 时 min/max 为 NaN，比较结果为 false，整块跳过
+            boolean skip = false;
+            for (int i = 0; i < activeCount && !skip; i++) {
+                int c = active[i];
+                skip = !(blockMax[c][b] >= low[c] && blockMin[c][b] <= high[c]);
+            }
+            if (skip) {
+                continue;
+            }
+            int end = Math.min(size, (b + 1) * BLOCK_ROWS);
+            for (int row = b * BLOCK_ROWS; row < end; row++) {
+                if (removed.get(row) || !matches(row, active, activeCount, low, high)) {
+                    continue;
+                }
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count << 1);
+                }
+                result[count++] = ids[row];
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @param row the committed recipe row, holding the {@link #COLUMNS} as returned by JDBC
+     */
+    public void add(long recipeId, Map<String, Object> row) {
+        double[] rowValues = new double[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            rowValues[c] = toDouble(row.get(COLUMNS[c]));
+        }
+        AfterCommit.run(() -> insert(recipeId, rowValues));
+    }
+
+    public void remove(long recipeId) {
+        AfterCommit.run(() -> delete(recipeId));
+    }
+
+    /**
+     * Drops the index after bulk changes, it is reloaded on the next lookup.
+     */
+    public synchronized void invalidate() {
+        ids = null;
+        rows = null;
+        values = null;
+        blockMin = null;
+        blockMax = null;
+        removed.clear();
+        size = 0;
+        loaded = false;
+    }
+
+    private boolean matches(int row, int[] active, int activeCount, double[] low, double[] high) {
+        for (int i = 0; i < activeCount; i++) {
+            int c = active[i];
+            double v = values[c][row];
+            // NaN (NULL) 不满足任何范围
+            if (!(v >= low[c] && v <= high[c])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ids = new long[BLOCK_ROWS];
+        rows = new LongIntHashMap();
+        values = new double[COLUMNS.length][BLOCK_ROWS];
+        blockMin = new double[COLUMNS.length][1];
+        blockMax = new double[COLUMNS.length][1];
+        removed.clear();
+        size = 0;
+        String sql = "SELECT recipeid, " + String.join(", ", COLUMNS) +
+                " FROM recipes ORDER BY calories NULLS LAST, recipeid";
+        jdbcTemplate.query(sql, rs -> {
+            double[] rowValues = new double[COLUMNS.length];
+            for (int c = 0; c < COLUMNS.length; c++) {
+                rowValues[c] = toDouble(rs.getBigDecimal(c + 2));
+            }
+            append(rs.getLong(1), rowValues);
+        });
+        loaded = true;
+        log.debug("Loaded nutrition of {} recipes in {} ms", size, System.currentTimeMillis() - start);
+    }
+
+    private synchronized void insert(long recipeId, double[] rowValues) {
+        if (!loaded || find(recipeId) >= 0) {
+            return;
+        }
+        append(recipeId, rowValues);
+    }
+
+    private synchronized void delete(long recipeId) {
+        if (!loaded) {
+            return;
+        }
+        int row = find(recipeId);
+        if (row < 0) {
+            return;
+        }
+        removed.set(row);
+        // 墓碑过多时丢弃，下次查询重新加载
+        if (removed.cardinality() > size / 2) {
+            invalidate();
+        }
+    }
+
+    private void append(long recipeId, double[] rowValues) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size << 1);
+            for (int c = 0; c < COLUMNS.length; c++) {
+                values[c] = Arrays.copyOf(values[c], size << 1);
+            }
+        }
+        int block = size / BLOCK_ROWS;
+        if (block == blockMin[0].length) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                blockMin[c] = Arrays.copyOf(blockMin[c], block << 1);
+                blockMax[c] = Arrays.copyOf(blockMax[c], block << 1);
+            }
+        }
+        if (size % BLOCK_ROWS == 0) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                blockMin[c][block] = Double.NaN;
+                blockMax[c][block] = Double.NaN;
+            }
+        }
+        ids[size] = recipeId;
+        rows.put(recipeId, size);
+        for (int c = 0; c < COLUMNS.length; c++) {
+            double v = rowValues[c];
+            values[c][size] = v;
+            if (!Double.isNaN(v)) {
+                if (Double.isNaN(blockMin[c][block]) || v < blockMin[c][block]) {
+                    blockMin[c][block] = v;
+                }
+                if (Double.isNaN(blockMax[c][block]) || v > blockMax[c][block]) {
+                    blockMax[c][block] = v;
+                }
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Position of the live row of {@code recipeId}, or -1.
+     */
+    private int find(long recipeId) {
+        int row = rows.get(recipeId);
+        return row < 0 || removed.get(row) ? -1 : row;
+    }
+
+    private int blockCount() {
+        return (size + BLOCK_ROWS - 1) / BLOCK_ROWS;
+    }
+
+    private static NutritionFilter.Range[] ranges(NutritionFilter filter) {
+        return new NutritionFilter.Range[]{
+                filter.getCalories(), filter.getFatContent(), filter.getSaturatedFatContent(),
+                filter.getCholesterolContent(), filter.getSodiumContent(), filter.getCarbohydrateContent(),
+                filter.getFiberContent(), filter.getSugarContent(), filter.getProteinContent()
+        };
+    }
+
+    private static double toDouble(Object value) {
+        return value == null ? Double.NaN : ((Number) value).doubleValue();
+    }
+}
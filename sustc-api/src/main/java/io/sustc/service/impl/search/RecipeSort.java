@@ -0,0 +1,101 @@
+package io.sustc.service.impl.search;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * The orders supported by {@code searchRecipes}, all ending with {@code recipeid DESC} as tie-breaker.
+ * <p>
+ * PostgreSQL puts {@code NULL}s first in descending and last in ascending order, the keyset
+ * predicates of {@link #after(Object, long, List)} follow the same placement.
+ */
+public enum RecipeSort {
+
+    RATING_DESC("rating_desc", "r.aggregatedrating", true),
+    DATE_DESC("date_desc", "r.datepublished", true),
+    CALORIES_ASC("calories_asc", "r.calories", false),
+    /**
+     * Used for a missing or unknown sort.
+     */
+    ID_DESC(null, null, false);
+
+    private final String name;
+
+    private final String column;
+
+    private final boolean descending;
+
+    RecipeSort(String name, String column, boolean descending) {
+        this.name = name;
+        this.column = column;
+        this.descending = descending;
+    }
+
+    public static RecipeSort of(String sort) {
+        for (RecipeSort value : values()) {
+            if (value.name != null && value.name.equals(sort)) {
+                return value;
+            }
+        }
+        return ID_DESC;
+    }
+
+    /**
+     * @return the sort column, or {@code null} when ordering by id only
+     */
+    public String column() {
+        return column;
+    }
+
+    public String orderBy() {
+        if (column == null) {
+            return " ORDER BY r.recipeid DESC ";
+        }
+        return " ORDER BY " + column + (descending ? " DESC" : " ASC") + ", r.recipeid DESC ";
+    }
+
+    /**
+     * Builds the predicate selecting the rows strictly after {@code (key, recipeId)} in this order.
+     *
+     * @param key  the sort column value of the last row, as returned by {@link #parseKey(String)}
+     * @param args receives the bind values
+     */
+    public String after(Object key, long recipeId, List<Object> args) {
+        if (column == null) {
+            args.add(recipeId);
+            return " AND r.recipeid < ? ";
+        }
+        if (key == null) {
+            args.add(recipeId);
+            // DESC 时 NULL 在前，之后还有全部非 NULL 行；ASC 时 NULL 在最后
+            return descending
+                    ? " AND ((" + column + " IS NULL AND r.recipeid < ?) OR " + column + " IS NOT NULL) "
+                    : " AND " + column + " IS NULL AND r.recipeid < ? ";
+        }
+        if (descending) {
+            // 两列同为 DESC，可以用行比较
+            args.add(key);
+            args.add(recipeId);
+            return " AND (" + column + ", r.recipeid) < (?, ?) ";
+        }
+        args.add(key);
+        args.add(key);
+        args.add(recipeId);
+        return " AND (" + column + " > ? OR (" + column + " = ? AND r.recipeid < ?) OR " + column + " IS NULL) ";
+    }
+
+    public String formatKey(Object key) {
+        if (key == null) {
+            return null;
+        }
+        return key instanceof BigDecimal ? ((BigDecimal) key).toPlainString() : key.toString();
+    }
+
+    public Object parseKey(String key) {
+        if (key == null || column == null) {
+            return null;
+        }
+        return this == DATE_DESC ? Timestamp.valueOf(key) : new BigDecimal(key);
+    }
+}
@@ -0,0 +1,67 @@
+package io.sustc.service.impl.search;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "sustc.search")
+@Data
+public class SearchConfig {
+
+    /**
+     * How {@code searchRecipes} matches keywords, and which indexes the import builds for it.
+     */
+    private Mode mode = Mode.TRIGRAM;
+
+    /**
+     * How long a total of {@code TotalStrategy.CACHED} is reused for the same filters.
+     */
+    private Duration countCacheTtl = Duration.ofSeconds(30);
+
+    /**
+     * Maximum number of filter signatures whose totals are cached.
+     */
+    private long countCacheSize = 10_000;
+
+    /**
+     * Cache the result pages of {@code searchRecipes}.
+     */
+    private boolean pageCacheEnabled = true;
+
+    /**
+     * How long a cached search page is served. Recipe writes clear the cache earlier.
+     */
+    private Duration pageCacheTtl = Duration.ofSeconds(5);
+
+    /**
+     * Maximum number of cached search pages.
+     */
+    private long pageCacheSize = 10_000;
+
+    public enum Mode {
+        /**
+         * Every keyword is a case-insensitive substring of the name or the description.
+         * No extra index, each search scans {@code recipes}.
+         */
+        SUBSTRING,
+        /**
+         * Same matching as {@link #SUBSTRING}, served by {@code pg_trgm} GIN indexes on the lower-cased
+         * name and description. Falls back to {@link #SUBSTRING} scans if the extension can't be created.
+         */
+        TRIGRAM,
+        /**
+         * Every keyword is a whole word of the name or the description, matched through a {@code tsvector}
+         * GIN index with the {@code simple} configuration (lower-casing, no stemming or stop words).
+         */
+        FULLTEXT,
+    }
+
+    /**
+     * The indexed document of {@link Mode#FULLTEXT}. The query has to repeat this expression verbatim.
+     */
+    public static final String FULLTEXT_DOCUMENT =
+            "to_tsvector('simple', COALESCE(name, '') || ' ' || COALESCE(description, ''))";
+}
@@ -0,0 +1,37 @@
+package io.sustc.service.impl.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Exact search totals per filter signature, for {@code PageResult.TotalStrategy#CACHED}.
+ * <p>
+ * Entries are not invalidated by single recipe writes, a cached total is at most
+ * {@link SearchConfig#getCountCacheTtl()} old. Bulk imports clear the whole cache.
+ */
+@Component
+public class SearchCountCache {
+
+    private final Cache<String, Long> counts;
+
+    public SearchCountCache(SearchConfig config) {
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(config.getCountCacheSize())
+                .expireAfterWrite(config.getCountCacheTtl())
+                .build();
+    }
+
+    /**
+     * @param signature the normalized filters, equal for searches matching the same rows
+     */
+    public long get(String signature, LongSupplier counter) {
+        return counts.get(signature, k -> counter.getAsLong());
+    }
+
+    public void invalidateAll() {
+        counts.invalidateAll();
+    }
+}
@@ -0,0 +1,63 @@
+package io.sustc.service.impl.search;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a keyset-paginated search page.
+ * <p>
+ * Encoded as URL-safe base64 so clients treat it as opaque. It does not carry the filters,
+ * a cursor is only meaningful for the search that produced it.
+ */
+@Value
+public class SearchCursor {
+
+    private static final String VERSION = "1";
+
+    RecipeSort sort;
+
+    /**
+     * 1-based number of the page this cursor leads to.
+     */
+    int page;
+
+    /**
+     * Sort column value of the last row, {@code null} for {@code NULL} or when sorting by id.
+     */
+    Object key;
+
+    long recipeId;
+
+    public String encode() {
+        String key = sort.formatKey(this.key);
+        String raw = String.join("|", VERSION, sort.name(), String.valueOf(page),
+                key == null ? "" : "=" + key, String.valueOf(recipeId));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static SearchCursor decode(String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (parts.length != 5 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            RecipeSort sort = RecipeSort.valueOf(parts[1]);
+            // 空串表示 NULL，非空值带 '=' 前缀
+            Object key = parts[3].isEmpty() ? null : sort.parseKey(parts[3].substring(1));
+            return new SearchCursor(sort, Integer.parseInt(parts[2]), key, Long.parseLong(parts[4]));
+        } catch (IllegalArgumentException e) {
+            // 包括 NumberFormatException 与非法的时间格式
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
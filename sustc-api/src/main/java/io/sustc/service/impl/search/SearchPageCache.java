@@ -0,0 +1,112 @@
+package io.sustc.service.impl.search;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.sustc.dto.PageResult;
+import io.sustc.dto.RecipeRecord;
+import io.sustc.service.impl.cache.RecipeCache;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Result pages of {@code searchRecipes}, keyed by the normalized search.
+ * <p>
+ * Concurrent misses of the same key run the query once, the other callers wait for its result.
+ * Any recipe write clears the whole cache (see {@link RecipeCache#invalidate(long)}), since it may move
+ * the recipe into, out of or within any page, and entries expire after {@link SearchConfig#getPageCacheTtl()}.
+ */
+@Component
+public class SearchPageCache {
+
+    private final SearchConfig config;
+
+    private final AsyncCache<Key, PageResult<RecipeRecord>> pages;
+
+    public SearchPageCache(SearchConfig config) {
+        this.config = config;
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(config.getPageCacheSize())
+                .expireAfterWrite(config.getPageCacheTtl())
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Searches matching the same rows in the same order get equal keys.
+     */
+    @Value
+    public static class Key {
+        String keyword;
+        String category;
+        Double minRating;
+        int page;
+        int size;
+        RecipeSort sort;
+        PageResult.TotalStrategy totalStrategy;
+
+        public static Key of(String keyword, String category, Double minRating, int page, int size,
+                             String sort, PageResult.TotalStrategy totalStrategy) {
+            // 与 searchWhere 一致：关键词按空白切分后小写匹配，空串等同于不过滤
+            String normalizedKeyword = StringUtils.hasText(keyword)
+                    ? String.join(" ", keyword.trim().toLowerCase().split("\\s+"))
+                    : null;
+            return new Key(normalizedKeyword, StringUtils.hasText(category) ? category : null, minRating,
+                    page, size, RecipeSort.of(sort), totalStrategy);
+        }
+    }
+
+    /**
+     * @return a copy of the cached page, running {@code loader} on the calling thread on a miss
+     */
+    public PageResult<RecipeRecord> get(Key key, Supplier<PageResult<RecipeRecord>> loader) {
+        if (!config.isPageCacheEnabled()) {
+            return loader.get();
+        }
+        CompletableFuture<PageResult<RecipeRecord>> load = new CompletableFuture<>();
+        CompletableFuture<PageResult<RecipeRecord>> page = pages.get(key, (k, executor) -> load);
+        if (page == load) {
+            // 本线程负责查询，同 key 的其他调用方等待同一个 future；失败的 future 会被 Caffeine 移除
+            try {
+                load.complete(loader.get());
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+            }
+        }
+        try {
+            return copy(page.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void invalidateAll() {
+        pages.synchronous().invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return pages.synchronous().stats();
+    }
+
+    public long size() {
+        return pages.synchronous().estimatedSize();
+    }
+
+    private static PageResult<RecipeRecord> copy(PageResult<RecipeRecord> page) {
+        List<RecipeRecord> items = new ArrayList<>(page.getItems().size());
+        for (RecipeRecord record : page.getItems()) {
+            items.add(RecipeCache.copy(record));
+        }
+        return new PageResult<>(items, page.getPage(), page.getSize(), page.getTotal(), page.getNextCursor(), page.getFacets());
+    }
+}
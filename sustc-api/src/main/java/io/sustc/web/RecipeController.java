@@ -1,8 +1,10 @@
 package io.sustc.web;
 
 import io.sustc.dto.AuthInfo;
+import io.sustc.dto.NutritionFilter;
 import io.sustc.dto.PageResult;
 import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.SearchFacets;
 import io.sustc.service.RecipeService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
@@ -27,6 +29,11 @@ public class RecipeController {
         return recipeService.getRecipeById(id);
     }
 
+    @PostMapping("/batch")
+    public List<RecipeRecord> getByIds(@RequestBody long[] ids) {
+        return recipeService.getRecipesByIds(ids);
+    }
+
     @GetMapping("/search")
     public PageResult<RecipeRecord> search(
             @RequestParam(required = false) String keyword,
@@ -34,9 +41,56 @@ public class RecipeController {
             @RequestParam(required = false) Double minRating,
             @RequestParam(defaultValue = "1") Integer page,
             @RequestParam(defaultValue = "20") Integer size,
-            @RequestParam(required = false) String sort
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) PageResult.TotalStrategy total,
+            @RequestParam(defaultValue = "false") boolean facets
+    ) {
+        PageResult<RecipeRecord> result = recipeService.searchRecipes(keyword, category, minRating, page, size, sort, total);
+        if (facets) {
+            result.setFacets(recipeService.searchFacets(keyword, category, minRating));
+        }
+        return result;
+    }
+
+    @GetMapping("/search/facets")
+    public SearchFacets searchFacets(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Double minRating
+    ) {
+        return recipeService.searchFacets(keyword, category, minRating);
+    }
+
+    @GetMapping("/search/cursor")
+    public PageResult<RecipeRecord> searchAfter(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Double minRating,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) PageResult.TotalStrategy total
     ) {
-        return recipeService.searchRecipes(keyword, category, minRating, page, size, sort);
+        return recipeService.searchRecipesAfter(keyword, category, minRating, cursor, size, sort, total);
+    }
+
+    @GetMapping("/search/ingredients")
+    public PageResult<RecipeRecord> searchByIngredients(
+            @RequestParam List<String> ingredient,
+            @RequestParam(defaultValue = "true") boolean all,
+            @RequestParam(defaultValue = "1") Integer page,
+            @RequestParam(defaultValue = "20") Integer size
+    ) {
+        return recipeService.searchRecipesByIngredients(ingredient, all, page, size);
+    }
+
+    @PostMapping("/search/nutrition")
+    public PageResult<RecipeRecord> searchByNutrition(
+            @RequestBody NutritionFilter filter,
+            @RequestParam(defaultValue = "1") Integer page,
+            @RequestParam(defaultValue = "20") Integer size
+    ) {
+        return recipeService.searchRecipesByNutrition(filter, page, size);
     }
 
     @PostMapping
@@ -71,8 +125,18 @@ public class RecipeController {
         return recipeService.getClosestCaloriePair();
     }
 
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return recipeService.getCacheStats();
+    }
+
     @GetMapping("/top3-complex")
     public List<Map<String, Object>> top3Complex() {
         return recipeService.getTop3MostComplexRecipesByIngredients();
     }
+
+    @GetMapping("/top-complex")
+    public List<Map<String, Object>> topComplex(@RequestParam(defaultValue = "3") int k) {
+        return recipeService.getTopKMostComplexRecipes(k);
+    }
 }
@@ -20,13 +20,11 @@ dependencies {
     implementation("org.apache.commons:commons-lang3")
     implementation("com.fasterxml.jackson.core:jackson-databind")
     implementation("org.furyio:fury-core:0.3.1")
+    implementation("org.lz4:lz4-java:1.8.0")
 
     implementation(platform("org.springframework.shell:spring-shell-dependencies:2.1.13"))
     implementation("org.springframework.shell:spring-shell-starter")
     implementation("org.jetbrains.kotlin:kotlin-stdlib-jdk8")
-
-    // 添加OpenCSV依赖
-    implementation("com.opencsv:opencsv:5.7.1")
 }
 
 tasks.withType<JavaExec> {
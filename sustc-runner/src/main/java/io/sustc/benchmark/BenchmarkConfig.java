@@ -34,6 +34,12 @@ public class BenchmarkConfig {
      */
     private boolean studentMode = false;
 
+    /**
+     * Files read by the import step. Formats other than {@code SER} are converted from the .ser files
+     * by a {@code db} command, and are refused if they are older than their source.
+     */
+    private ImportFormat importFormat = ImportFormat.SER;
+
     @Bean
     ThreadSafeFury fury() {
         return Fury.builder()
@@ -49,4 +55,19 @@ public class BenchmarkConfig {
     ObjectMapper objectMapper() {
         return new ObjectMapper();
     }
-}
\ No newline at end of file
+
+    public enum ImportFormat {
+        /**
+         * The .ser files, deserialized before the measured import.
+         */
+        SER,
+        /**
+         * The .chunked.ser files written by {@code db ser2chunked}, decoded while importing.
+         */
+        CHUNKED,
+        /**
+         * The columnar .col snapshots written by {@code db ser2snapshot}, decoded while importing.
+         */
+        SNAPSHOT
+    }
+}
@@ -15,6 +15,18 @@ public final class BenchmarkConstants {
 
     public static final String RECIPE_RECORDS = "recipes.ser";
 
+    public static final String REVIEW_RECORD_CHUNKS = "reviews.chunked.ser";
+
+    public static final String USER_RECORD_CHUNKS = "users.chunked.ser";
+
+    public static final String RECIPE_RECORD_CHUNKS = "recipes.chunked.ser";
+
+    public static final String REVIEW_SNAPSHOT = "reviews.col";
+
+    public static final String USER_SNAPSHOT = "users.col";
+
+    public static final String RECIPE_SNAPSHOT = "recipes.col";
+
     public static final String TEST_DATA = "test";
 
     public static final String RECIPE_NAME = "recipe_name.ser";
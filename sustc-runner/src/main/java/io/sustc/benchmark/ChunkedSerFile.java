@@ -0,0 +1,138 @@
+package io.sustc.benchmark;
+
+import io.fury.ThreadSafeFury;
+import lombok.NoArgsConstructor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A {@code .ser} variant holding a record list as independently serialized chunks, so it can be
+ * written and read with one chunk in memory at a time.
+ * <p>
+ * Layout: the {@link #MAGIC} int, then for every chunk its byte length (int) followed by
+ * the Fury bytes of a {@code List} of at most the chunk size records.
+ */
+@NoArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class ChunkedSerFile {
+
+    /**
+     * "SUSC" in ASCII.
+     */
+    public static final int MAGIC = 0x53555343;
+
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    public static <T> void write(ThreadSafeFury fury, Path file, Iterator<T> records, int chunkSize) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            List<T> chunk = new ArrayList<>(chunkSize);
+            while (records.hasNext()) {
+                chunk.add(records.next());
+                if (chunk.size() == chunkSize) {
+                    writeChunk(fury, out, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(fury, out, chunk);
+            }
+        }
+    }
+
+    /**
+     * Opens the file lazily: every {@code iterator()} call reads it again from the start,
+     * decoding one chunk at a time. The iterator closes the file at the end,
+     * or when closed early through {@link AutoCloseable}.
+     */
+    public static <T> Iterable<T> read(ThreadSafeFury fury, Path file) {
+        return () -> new ChunkIterator<>(fury, file);
+    }
+
+    private static void writeChunk(ThreadSafeFury fury, DataOutputStream out, List<?> chunk) throws IOException {
+        byte[] bytes = fury.serialize(new ArrayList<>(chunk));
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class ChunkIterator<T> implements Iterator<T>, AutoCloseable {
+
+        private final ThreadSafeFury fury;
+
+        private final DataInputStream in;
+
+        private Iterator<T> current = Collections.emptyIterator();
+
+        private boolean closed;
+
+        ChunkIterator(ThreadSafeFury fury, Path file) {
+            this.fury = fury;
+            try {
+                this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+                if (in.readInt() != MAGIC) {
+                    in.close();
+                    throw new IllegalStateException(file + " is not a chunked .ser file");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (!nextChunk()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean nextChunk() {
+            if (closed) {
+                return false;
+            }
+            try {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    close();
+                    return false;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                current = ((List<T>) fury.deserialize(bytes)).iterator();
+                return true;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.sustc.csv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A CSV file exposed as a re-iterable stream of records, for imports that must not hold the whole file.
+ * <p>
+ * Each {@link #iterator()} maps the file again and decodes it a window of ranges at a time, the ranges
+ * of a window in parallel. At most {@code window * rangeSize} bytes worth of records are on the heap.
+ */
+public final class CsvRecordSource<T> implements Iterable<T> {
+
+    private static final long RANGE_SIZE = 4L << 20;
+
+    private final Path file;
+
+    private final int minFields;
+
+    private final Function<CsvRow, T> mapper;
+
+    private final int window = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Range boundaries, found on the first iteration and reused by the next ones.
+     */
+    private volatile long[] bounds;
+
+    public CsvRecordSource(Path file, int minFields, Function<CsvRow, T> mapper) {
+        this.file = file;
+        this.minFields = minFields;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new RecordIterator();
+    }
+
+    private final class RecordIterator implements Iterator<T>, AutoCloseable {
+
+        private final FileChannel channel;
+
+        private final long[] bounds;
+
+        private int nextRange;
+
+        private Iterator<T> current = Collections.emptyIterator();
+
+        RecordIterator() {
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                long[] b = CsvRecordSource.this.bounds;
+                if (b == null) {
+                    b = CsvScanner.split(channel, RANGE_SIZE);
+                    CsvRecordSource.this.bounds = b;
+                }
+                this.bounds = b;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (nextRange >= bounds.length - 1) {
+                    close();
+                    return false;
+                }
+                current = decodeWindow().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private List<T> decodeWindow() {
+            int from = nextRange;
+            int to = Math.min(bounds.length - 1, from + window);
+            nextRange = to;
+            List<List<T>> parts = IntStream.range(from, to)
+                    .parallel()
+                    .mapToObj(i -> {
+                        List<T> part = new ArrayList<>();
+                        ParallelCsvReader.forEachRecord(channel, bounds[i], bounds[i + 1], row -> {
+                            if (row.size() >= minFields) {
+                                part.add(mapper.apply(row));
+                            }
+                        });
+                        return part;
+                    })
+                    .collect(Collectors.toList());
+            List<T> records = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+            parts.forEach(records::addAll);
+            return records;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
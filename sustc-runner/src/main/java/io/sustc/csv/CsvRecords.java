@@ -0,0 +1,291 @@
+package io.sustc.csv;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+import java.text.ParsePosition;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps the records of the dataset's CSV files to import records.
+ * <p>
+ * Malformed values become 0, {@code null} or empty, as before. Values are parsed without regular
+ * expressions, and the formatters are immutable and shared.
+ * The string parsers here are the reference, {@link CsvRow} skips decoding where it can.
+ */
+@NoArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class CsvRecords {
+
+    public static final int USER_FIELDS = 9;
+
+    public static final int RECIPE_FIELDS = 24;
+
+    public static final int REVIEW_FIELDS = 9;
+
+    private static final long[] NO_LONGS = new long[0];
+
+    private static final String[] NO_STRINGS = new String[0];
+
+    /**
+     * Tried in order, a value only has to start with a match (trailing text such as a zone is ignored).
+     */
+    private static final DateTimeFormatter[] TIMESTAMP_FORMATS = {
+            timestampFormat(true, " "),
+            timestampFormat(true, "T"),
+            timestampFormat(true, null),
+            timestampFormat(false, " "),
+            timestampFormat(false, null),
+    };
+
+    public static UserRecord toUser(CsvRow row) {
+        return UserRecord.builder()
+                .authorId(row.getLong(0))
+                .authorName(row.getTrimmed(1))
+                .gender(row.getTrimmed(2))
+                .age(row.getInt(3))
+                .followers(row.getInt(4))
+                .following(row.getInt(5))
+                .followerUsers(row.getLongList(6))
+                .followingUsers(row.getLongList(7))
+                .password(row.getTrimmed(8))
+                .build();
+    }
+
+    public static RecipeRecord toRecipe(CsvRow row) {
+        return RecipeRecord.builder()
+                .RecipeId(row.getLong(0))
+                .name(row.getTrimmed(1))
+                .authorId(row.getLong(2))
+                .authorName(row.getTrimmed(3))
+                .cookTime(row.getTrimmed(4))
+                .prepTime(row.getTrimmed(5))
+                .totalTime(row.getTrimmed(6))
+                .datePublished(row.getTimestamp(7))
+                .description(row.getTrimmed(8))
+                .recipeCategory(row.getTrimmed(9))
+                .recipeIngredientParts(row.getStringList(10))
+                .aggregatedRating(row.getFloat(11))
+                .reviewCount((int) row.getFloat(12))
+                .calories(row.getFloat(13))
+                .fatContent(row.getFloat(14))
+                .saturatedFatContent(row.getFloat(15))
+                .cholesterolContent(row.getFloat(16))
+                .sodiumContent(row.getFloat(17))
+                .carbohydrateContent(row.getFloat(18))
+                .fiberContent(row.getFloat(19))
+                .sugarContent(row.getFloat(20))
+                .proteinContent(row.getFloat(21))
+                .recipeServings((int) row.getFloat(22))
+                .recipeYield(row.getTrimmed(23))
+                .build();
+    }
+
+    public static ReviewRecord toReview(CsvRow row) {
+        return ReviewRecord.builder()
+                .reviewId(row.getLong(0))
+                .recipeId(row.getLong(1))
+                .authorId(row.getLong(2))
+                .authorName(row.getTrimmed(3))
+                .rating(row.getFloat(4))
+                .review(row.getTrimmed(5))
+                .dateSubmitted(row.getTimestamp(6))
+                .dateModified(row.getTimestamp(7))
+                .likes(row.getLongList(8))
+                .build();
+    }
+
+    private static boolean isNull(String s) {
+        return s == null || s.isEmpty() || "null".equalsIgnoreCase(s);
+    }
+
+    static long parseLong(String s) {
+        s = s == null ? null : s.trim();
+        if (isNull(s)) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    static int parseInt(String s) {
+        s = s == null ? null : s.trim();
+        if (isNull(s)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static float parseFloat(String s) {
+        s = s == null ? null : s.trim();
+        if (isNull(s)) {
+            return 0.0f;
+        }
+        try {
+            return Float.parseFloat(s);
+        } catch (NumberFormatException e) {
+            return 0.0f;
+        }
+    }
+
+    /**
+     * Parses {@code "1,2,3"} (the surrounding quotes, or whatever the first and last characters are,
+     * are dropped). Unparsable ids become 0, trailing empty ids are dropped.
+     */
+    static long[] parseLongList(String s) {
+        s = s == null ? null : s.trim();
+        if (isNull(s)) {
+            return NO_LONGS;
+        }
+        if (s.length() >= 2) {
+            s = s.substring(1, s.length() - 1);
+        }
+        if (s.isEmpty()) {
+            return NO_LONGS;
+        }
+        long[] values = new long[8];
+        int count = 0;
+        // 末尾连续的空项不计入，与 String.split 一致
+        int nonEmptyCount = 0;
+        int from = 0;
+        while (true) {
+            int comma = s.indexOf(',', from);
+            int end = comma < 0 ? s.length() : comma;
+            String item = s.substring(from, end).trim();
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = item.isEmpty() ? 0L : parseLong(item);
+            if (!item.isEmpty()) {
+                nonEmptyCount = count;
+            }
+            if (comma < 0) {
+                break;
+            }
+            from = comma + 1;
+        }
+        // 没有逗号时 String.split 原样返回整个值
+        return Arrays.copyOf(values, count == 1 ? 1 : nonEmptyCount);
+    }
+
+    /**
+     * Parses {@code c("a", "b")} into its quoted items. Without quoted items, or without
+     * the {@code c(...)} wrapper, the value is split at commas instead.
+     */
+    static String[] parseStringList(String s) {
+        s = s == null ? null : s.trim();
+        if (isNull(s)) {
+            return NO_STRINGS;
+        }
+        if (s.startsWith("c(") && s.endsWith(")")) {
+            String content = s.substring(2, s.length() - 1).trim();
+            List<String> items = new ArrayList<>();
+            int from = 0;
+            while (true) {
+                int open = content.indexOf('"', from);
+                if (open < 0) {
+                    break;
+                }
+                int close = content.indexOf('"', open + 1);
+                if (close < 0) {
+                    break;
+                }
+                items.add(content.substring(open + 1, close));
+                from = close + 1;
+            }
+            if (!items.isEmpty()) {
+                return items.toArray(NO_STRINGS);
+            }
+            return splitNonEmpty(content);
+        }
+        return splitNonEmpty(s);
+    }
+
+    private static String[] splitNonEmpty(String s) {
+        List<String> items = new ArrayList<>();
+        int from = 0;
+        while (true) {
+            int comma = s.indexOf(',', from);
+            String item = (comma < 0 ? s.substring(from) : s.substring(from, comma)).trim();
+            if (!item.isEmpty()) {
+                items.add(item);
+            }
+            if (comma < 0) {
+                return items.toArray(NO_STRINGS);
+            }
+            from = comma + 1;
+        }
+    }
+
+    /**
+     * Accepts {@code yyyy-MM-dd HH:mm:ss}, {@code yyyy-MM-dd'T'HH:mm:ss}, {@code yyyy-MM-dd},
+     * {@code MM/dd/yyyy HH:mm:ss} and {@code MM/dd/yyyy}, in the JVM time zone.
+     * Out-of-range fields roll over like the lenient {@code SimpleDateFormat} did.
+     */
+    static Timestamp parseTimestamp(String s) {
+        s = s == null ? null : s.trim();
+        if (isNull(s)) {
+            return null;
+        }
+        for (DateTimeFormatter format : TIMESTAMP_FORMATS) {
+            ParsePosition pos = new ParsePosition(0);
+            TemporalAccessor t = format.parseUnresolved(s, pos);
+            if (t == null || pos.getErrorIndex() >= 0) {
+                continue;
+            }
+            LocalDateTime time = LocalDateTime.of((int) t.getLong(ChronoField.YEAR_OF_ERA), 1, 1, 0, 0)
+                    .plusMonths(t.getLong(ChronoField.MONTH_OF_YEAR) - 1)
+                    .plusDays(t.getLong(ChronoField.DAY_OF_MONTH) - 1);
+            if (t.isSupported(ChronoField.HOUR_OF_DAY)) {
+                time = time.plusHours(t.getLong(ChronoField.HOUR_OF_DAY))
+                        .plusMinutes(t.getLong(ChronoField.MINUTE_OF_HOUR))
+                        .plusSeconds(t.getLong(ChronoField.SECOND_OF_MINUTE));
+            }
+            return Timestamp.valueOf(time);
+        }
+        return null;
+    }
+
+    /**
+     * @param yearFirst {@code yyyy-MM-dd} if true, {@code MM/dd/yyyy} otherwise
+     * @param timeSeparator text between date and {@code HH:mm:ss}, or {@code null} for a date only
+     */
+    private static DateTimeFormatter timestampFormat(boolean yearFirst, String timeSeparator) {
+        DateTimeFormatterBuilder b = new DateTimeFormatterBuilder();
+        if (yearFirst) {
+            b.appendValue(ChronoField.YEAR_OF_ERA, 1, 9, SignStyle.NORMAL).appendLiteral('-')
+                    .appendValue(ChronoField.MONTH_OF_YEAR, 1, 9, SignStyle.NORMAL).appendLiteral('-')
+                    .appendValue(ChronoField.DAY_OF_MONTH, 1, 9, SignStyle.NORMAL);
+        } else {
+            b.appendValue(ChronoField.MONTH_OF_YEAR, 1, 9, SignStyle.NORMAL).appendLiteral('/')
+                    .appendValue(ChronoField.DAY_OF_MONTH, 1, 9, SignStyle.NORMAL).appendLiteral('/')
+                    .appendValue(ChronoField.YEAR_OF_ERA, 1, 9, SignStyle.NORMAL);
+        }
+        if (timeSeparator != null) {
+            b.appendLiteral(timeSeparator)
+                    .appendValue(ChronoField.HOUR_OF_DAY, 1, 9, SignStyle.NORMAL).appendLiteral(':')
+                    .appendValue(ChronoField.MINUTE_OF_HOUR, 1, 9, SignStyle.NORMAL).appendLiteral(':')
+                    .appendValue(ChronoField.SECOND_OF_MINUTE, 1, 9, SignStyle.NORMAL);
+        }
+        // 只取字段值，不做范围校验，越界值在上面按宽松规则进位
+        return b.toFormatter().withResolverStyle(ResolverStyle.LENIENT);
+    }
+}
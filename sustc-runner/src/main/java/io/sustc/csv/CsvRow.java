@@ -0,0 +1,212 @@
+package io.sustc.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * A view on the fields of one CSV record inside a (mapped) buffer.
+ * <p>
+ * Only offsets are recorded while scanning; a field is decoded when it is read, and numbers
+ * and id lists are parsed straight from the bytes. The view is reused for the next record,
+ * values must be read before the record handler returns.
+ */
+public final class CsvRow {
+
+    private static final byte QUOTE = '"';
+
+    private ByteBuffer buf;
+
+    private int count;
+
+    private int[] starts = new int[32];
+
+    private int[] ends = new int[32];
+
+    /**
+     * Whether the field contains doubled quotes that decoding has to collapse.
+     */
+    private boolean[] escaped = new boolean[32];
+
+    private byte[] scratch = new byte[256];
+
+    void reset(ByteBuffer buf) {
+        this.buf = buf;
+        this.count = 0;
+    }
+
+    void addField(int start, int end, boolean hasEscapes) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            escaped = Arrays.copyOf(escaped, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        escaped[count] = hasEscapes;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    boolean isBlank() {
+        return count == 1 && starts[0] == ends[0];
+    }
+
+    /**
+     * @return the decoded field, never {@code null}
+     */
+    public String getString(int i) {
+        int len = copy(i);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the decoded field without leading and trailing whitespace
+     */
+    public String getTrimmed(int i) {
+        return getString(i).trim();
+    }
+
+    /**
+     * Same as {@link CsvRecords#parseLong(String)}, without decoding plain numbers.
+     */
+    public long getLong(int i) {
+        int from = trimStart(i);
+        int to = trimEnd(i, from);
+        long value = plainInteger(from, to, 18);
+        return value != Long.MIN_VALUE ? value : CsvRecords.parseLong(getString(i));
+    }
+
+    /**
+     * Same as {@link CsvRecords#parseInt(String)}, without decoding plain numbers.
+     */
+    public int getInt(int i) {
+        int from = trimStart(i);
+        int to = trimEnd(i, from);
+        long value = plainInteger(from, to, 9);
+        return value != Long.MIN_VALUE ? (int) value : CsvRecords.parseInt(getString(i));
+    }
+
+    public float getFloat(int i) {
+        return CsvRecords.parseFloat(getString(i));
+    }
+
+    public Timestamp getTimestamp(int i) {
+        return CsvRecords.parseTimestamp(getString(i));
+    }
+
+    public String[] getStringList(int i) {
+        return CsvRecords.parseStringList(getString(i));
+    }
+
+    /**
+     * Same as {@link CsvRecords#parseLongList(String)}. The common {@code "1,2,3"} shape is parsed
+     * from the bytes, anything else is decoded and handed to the string version.
+     */
+    public long[] getLongList(int i) {
+        if (escaped[i]) {
+            return CsvRecords.parseLongList(getString(i));
+        }
+        int from = trimStart(i);
+        int to = trimEnd(i, from);
+        // 去掉首尾各一个字符（通常是引号）
+        if (to - from < 3) {
+            return CsvRecords.parseLongList(getString(i));
+        }
+        from++;
+        to--;
+        long[] values = new long[8];
+        int n = 0;
+        int pieceStart = from;
+        for (int p = from; p <= to; p++) {
+            if (p == to || buf.get(p) == ',') {
+                int s = pieceStart;
+                int e = p;
+                while (s < e && (buf.get(s) & 0xff) <= ' ') {
+                    s++;
+                }
+                while (e > s && (buf.get(e - 1) & 0xff) <= ' ') {
+                    e--;
+                }
+                long value = plainInteger(s, e, 18);
+                if (value == Long.MIN_VALUE) {
+                    return CsvRecords.parseLongList(getString(i));
+                }
+                if (n == values.length) {
+                    values = Arrays.copyOf(values, n * 2);
+                }
+                values[n++] = value;
+                pieceStart = p + 1;
+            }
+        }
+        return Arrays.copyOf(values, n);
+    }
+
+    private int trimStart(int i) {
+        int p = starts[i];
+        while (p < ends[i] && (buf.get(p) & 0xff) <= ' ') {
+            p++;
+        }
+        return p;
+    }
+
+    private int trimEnd(int i, int from) {
+        int p = ends[i];
+        while (p > from && (buf.get(p - 1) & 0xff) <= ' ') {
+            p--;
+        }
+        return p;
+    }
+
+    /**
+     * @return the value of an optionally signed run of 1 to {@code maxDigits} digits,
+     * or {@link Long#MIN_VALUE} if {@code [from, to)} is anything else
+     */
+    private long plainInteger(int from, int to, int maxDigits) {
+        if (from >= to) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = false;
+        byte first = buf.get(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+        }
+        if (from == to || to - from > maxDigits) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int p = from; p < to; p++) {
+            int d = buf.get(p) - '0';
+            if (d < 0 || d > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    private int copy(int i) {
+        int start = starts[i];
+        int len = ends[i] - start;
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        buf.get(start, scratch, 0, len);
+        if (!escaped[i]) {
+            return len;
+        }
+        int n = 0;
+        for (int j = 0; j < len; j++) {
+            scratch[n++] = scratch[j];
+            if (scratch[j] == QUOTE) {
+                j++;
+            }
+        }
+        return n;
+    }
+}
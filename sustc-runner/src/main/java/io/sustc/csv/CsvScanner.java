@@ -0,0 +1,132 @@
+package io.sustc.csv;
+
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits RFC 4180 CSV bytes into records and fields.
+ * <p>
+ * Fields may be quoted, with {@code ""} standing for a quote inside a quoted field.
+ * Quoted fields may span several lines, so record boundaries are only found with a scan
+ * that keeps track of the quote state from the start of the data.
+ */
+@NoArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class CsvScanner {
+
+    private static final byte QUOTE = '"';
+
+    private static final byte COMMA = ',';
+
+    private static final byte LF = '\n';
+
+    private static final byte CR = '\r';
+
+    /**
+     * Size of the windows mapped while looking for range boundaries.
+     */
+    private static final int SCAN_WINDOW = 1 << 28;
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(CsvRow row);
+    }
+
+    /**
+     * Cuts the file after its header line into ranges of about {@code rangeSize} bytes that each
+     * hold whole records. A doubled quote toggles the state twice, so a single pass over the bytes
+     * suffices; the file is mapped window by window, so files beyond 2 GB work too.
+     *
+     * @return ascending offsets, the first being the start of the first data record and the last the file size
+     */
+    public static long[] split(FileChannel channel, long rangeSize) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        boolean quoted = false;
+        boolean header = true;
+        long next = 0;
+        for (long base = 0; base < size; base += SCAN_WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(SCAN_WINDOW, size - base));
+            for (int i = 0, n = window.limit(); i < n; i++) {
+                byte b = window.get(i);
+                if (b == QUOTE) {
+                    quoted = !quoted;
+                } else if (b == LF && !quoted) {
+                    long boundary = base + i + 1;
+                    if (header) {
+                        header = false;
+                        bounds.add(boundary);
+                        next = boundary + rangeSize;
+                    } else if (boundary >= next && boundary < size) {
+                        bounds.add(boundary);
+                        next = boundary + rangeSize;
+                    }
+                }
+            }
+        }
+        if (header) {
+            // 只有表头（或空文件）
+            bounds.add(size);
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Scans the records of {@code [from, to)}, which must start at a record boundary.
+     * Blank lines are skipped. The row passed to {@code handler} is reused for the next record.
+     */
+    public static void parse(ByteBuffer data, int from, int to, CsvRow row, RecordHandler handler) {
+        int i = from;
+        while (i < to) {
+            row.reset(data);
+            boolean endOfRecord = false;
+            while (!endOfRecord) {
+                if (i < to && data.get(i) == QUOTE) {
+                    // 带引号的字段：找到闭合引号，"" 留到解码时还原
+                    int start = ++i;
+                    boolean escaped = false;
+                    while (i < to) {
+                        if (data.get(i) == QUOTE) {
+                            if (i + 1 < to && data.get(i + 1) == QUOTE) {
+                                escaped = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    row.addField(start, i, escaped);
+                    // 跳过闭合引号，以及引号与分隔符之间的多余字符
+                    i = Math.min(to, i + 1);
+                    while (i < to && data.get(i) != COMMA && data.get(i) != LF) {
+                        i++;
+                    }
+                } else {
+                    int start = i;
+                    while (i < to && data.get(i) != COMMA && data.get(i) != LF) {
+                        i++;
+                    }
+                    int end = i;
+                    if (end > start && data.get(end - 1) == CR && (end == to || data.get(end) == LF)) {
+                        end--;
+                    }
+                    row.addField(start, end, false);
+                }
+                if (i >= to || data.get(i) == LF) {
+                    endOfRecord = true;
+                }
+                i++;
+            }
+            if (!row.isBlank()) {
+                handler.accept(row);
+            }
+        }
+    }
+}
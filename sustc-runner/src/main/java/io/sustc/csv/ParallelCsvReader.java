@@ -0,0 +1,82 @@
+package io.sustc.csv;
+
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a CSV file with a header line on all cores: the file is cut into byte ranges at record
+ * boundaries, and the ranges are memory-mapped, parsed and mapped in parallel. The result keeps the file order.
+ * <p>
+ * Nothing is copied to the heap but the decoded values the mapper asks for.
+ */
+@NoArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class ParallelCsvReader {
+
+    /**
+     * Ranges per core, so that a slow range doesn't leave the other cores idle.
+     */
+    private static final int RANGES_PER_CORE = 4;
+
+    /**
+     * Upper bound of a range, a mapped buffer can't exceed 2 GB.
+     */
+    private static final long MAX_RANGE_SIZE = 64L << 20;
+
+    /**
+     * @param minFields records with fewer fields are skipped
+     * @param mapper    turns a record into a value, called concurrently; the row is only valid during the call
+     */
+    public static <T> List<T> read(Path file, int minFields, Function<CsvRow, T> mapper) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = split(channel);
+
+            List<List<T>> parts = IntStream.range(0, bounds.length - 1)
+                    .parallel()
+                    .mapToObj(i -> {
+                        List<T> part = new ArrayList<>();
+                        forEachRecord(channel, bounds[i], bounds[i + 1], row -> {
+                            if (row.size() >= minFields) {
+                                part.add(mapper.apply(row));
+                            }
+                        });
+                        return part;
+                    })
+                    .collect(Collectors.toList());
+
+            List<T> result = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+            parts.forEach(result::addAll);
+            return result;
+        }
+    }
+
+    static long[] split(FileChannel channel) throws IOException {
+        long rangeSize = channel.size() / ((long) Runtime.getRuntime().availableProcessors() * RANGES_PER_CORE);
+        return CsvScanner.split(channel, Math.max(1, Math.min(rangeSize, MAX_RANGE_SIZE)));
+    }
+
+    /**
+     * Maps {@code [from, to)} of the file and scans its records.
+     */
+    static void forEachRecord(FileChannel channel, long from, long to, CsvScanner.RecordHandler handler) {
+        if (from >= to) {
+            return;
+        }
+        try {
+            MappedByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            CsvScanner.parse(range, 0, range.limit(), new CsvRow(), handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
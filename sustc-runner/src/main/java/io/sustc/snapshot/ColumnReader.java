@@ -0,0 +1,190 @@
+package io.sustc.snapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Reads the columns written by {@link ColumnWriter}, in the same order, into primitive arrays.
+ */
+final class ColumnReader {
+
+    private final byte[] buf;
+
+    private int pos;
+
+    ColumnReader(byte[] buf) {
+        this.buf = buf;
+    }
+
+    long[] longColumn(int rows) {
+        long[] values = new long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            previous += readZigzag();
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    int[] intColumn(int rows) {
+        int[] values = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = (int) readZigzag();
+        }
+        return values;
+    }
+
+    float[] floatColumn(int rows) {
+        float[] values = new float[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = Float.intBitsToFloat(readInt());
+        }
+        return values;
+    }
+
+    Float[] nullableFloatColumn(int rows) {
+        boolean[] present = booleanColumn(rows);
+        Float[] values = new Float[rows];
+        for (int i = 0; i < rows; i++) {
+            if (present[i]) {
+                values[i] = Float.intBitsToFloat(readInt());
+            }
+        }
+        return values;
+    }
+
+    Integer[] nullableIntColumn(int rows) {
+        Integer[] values = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            long v = readVarint();
+            if (v != 0) {
+                values[i] = (int) unzigzag(v - 1);
+            }
+        }
+        return values;
+    }
+
+    boolean[] booleanColumn(int rows) {
+        boolean[] values = new boolean[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = buf[pos++] != 0;
+        }
+        return values;
+    }
+
+    Timestamp[] timestampColumn(int rows) {
+        Timestamp[] values = new Timestamp[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            long nanos = readVarint();
+            if (nanos == 0) {
+                continue;
+            }
+            previous += readZigzag();
+            Timestamp ts = new Timestamp(previous);
+            ts.setNanos(ts.getNanos() + (int) (nanos - 1));
+            values[i] = ts;
+        }
+        return values;
+    }
+
+    String[] stringColumn(int rows) {
+        String[] values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = readString();
+        }
+        return values;
+    }
+
+    String[] dictionaryColumn(int rows) {
+        String[] dictionary = readDictionary();
+        String[] values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = dictionary[(int) readVarint()];
+        }
+        return values;
+    }
+
+    String[][] dictionaryListColumn(int rows) {
+        String[] dictionary = readDictionary();
+        String[][] values = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            int length = (int) readVarint() - 1;
+            if (length < 0) {
+                continue;
+            }
+            String[] list = new String[length];
+            for (int j = 0; j < length; j++) {
+                list[j] = dictionary[(int) readVarint()];
+            }
+            values[i] = list;
+        }
+        return values;
+    }
+
+    long[][] longListColumn(int rows) {
+        long[][] values = new long[rows][];
+        for (int i = 0; i < rows; i++) {
+            int length = (int) readVarint() - 1;
+            if (length < 0) {
+                continue;
+            }
+            long[] list = new long[length];
+            long previous = 0;
+            for (int j = 0; j < length; j++) {
+                previous += readZigzag();
+                list[j] = previous;
+            }
+            values[i] = list;
+        }
+        return values;
+    }
+
+    /**
+     * Index 0 is {@code null}, codes start at 1.
+     */
+    private String[] readDictionary() {
+        int n = (int) readVarint();
+        String[] dictionary = new String[n + 1];
+        for (int i = 1; i <= n; i++) {
+            dictionary[i] = readString();
+        }
+        return dictionary;
+    }
+
+    private String readString() {
+        int length = (int) readVarint() - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    private int readInt() {
+        int v = (buf[pos] & 0xff) << 24 | (buf[pos + 1] & 0xff) << 16 | (buf[pos + 2] & 0xff) << 8 | (buf[pos + 3] & 0xff);
+        pos += 4;
+        return v;
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private long readZigzag() {
+        return unzigzag(readVarint());
+    }
+
+    private long readVarint() {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return v;
+    }
+}
@@ -0,0 +1,237 @@
+package io.sustc.snapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes the columns of one snapshot block into a growable byte array.
+ * <p>
+ * Integers are varints, ids are zigzag-encoded deltas to the previous row (small for the mostly
+ * ascending ids of the dataset), and floats are raw IEEE bits. Low-cardinality strings go through
+ * a block-local dictionary. The block is LZ4-compressed as a whole afterwards.
+ */
+final class ColumnWriter {
+
+    private byte[] buf = new byte[1 << 16];
+
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    <T> void longColumn(List<T> rows, ToLongFunction<T> getter) {
+        long previous = 0;
+        for (T row : rows) {
+            long value = getter.applyAsLong(row);
+            writeZigzag(value - previous);
+            previous = value;
+        }
+    }
+
+    <T> void intColumn(List<T> rows, ToLongFunction<T> getter) {
+        for (T row : rows) {
+            writeZigzag(getter.applyAsLong(row));
+        }
+    }
+
+    <T> void floatColumn(List<T> rows, ToDoubleFunction<T> getter) {
+        for (T row : rows) {
+            writeInt(Float.floatToRawIntBits((float) getter.applyAsDouble(row)));
+        }
+    }
+
+    /**
+     * A presence byte per row, then the raw bits of the present values.
+     */
+    <T> void nullableFloatColumn(List<T> rows, Function<T, Float> getter) {
+        for (T row : rows) {
+            ensure(1);
+            buf[size++] = (byte) (getter.apply(row) != null ? 1 : 0);
+        }
+        for (T row : rows) {
+            Float value = getter.apply(row);
+            if (value != null) {
+                writeInt(Float.floatToRawIntBits(value));
+            }
+        }
+    }
+
+    <T> void nullableIntColumn(List<T> rows, Function<T, Integer> getter) {
+        for (T row : rows) {
+            Integer value = getter.apply(row);
+            // 0 表示 null，其余为 zigzag(v) + 1
+            writeVarint(value == null ? 0 : zigzag(value) + 1);
+        }
+    }
+
+    <T> void booleanColumn(List<T> rows, Function<T, Boolean> getter) {
+        for (T row : rows) {
+            ensure(1);
+            buf[size++] = (byte) (getter.apply(row) ? 1 : 0);
+        }
+    }
+
+    /**
+     * Epoch millis and the sub-millisecond nanos, so a {@link Timestamp} round-trips exactly.
+     */
+    <T> void timestampColumn(List<T> rows, Function<T, Timestamp> getter) {
+        long previous = 0;
+        for (T row : rows) {
+            Timestamp ts = getter.apply(row);
+            if (ts == null) {
+                writeVarint(0);
+                continue;
+            }
+            writeVarint(1 + ts.getNanos() % 1_000_000);
+            writeZigzag(ts.getTime() - previous);
+            previous = ts.getTime();
+        }
+    }
+
+    <T> void stringColumn(List<T> rows, Function<T, String> getter) {
+        for (T row : rows) {
+            writeString(getter.apply(row));
+        }
+    }
+
+    /**
+     * The distinct values of the block first, then one code per row.
+     */
+    <T> void dictionaryColumn(List<T> rows, Function<T, String> getter) {
+        Map<String, Integer> codes = new HashMap<>();
+        int[] rowCodes = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            rowCodes[i] = code(codes, getter.apply(rows.get(i)));
+        }
+        writeDictionary(codes);
+        for (int c : rowCodes) {
+            writeVarint(c);
+        }
+    }
+
+    /**
+     * Like {@link #dictionaryColumn}, for a string array per row (e.g. ingredients).
+     */
+    <T> void dictionaryListColumn(List<T> rows, Function<T, String[]> getter) {
+        Map<String, Integer> codes = new HashMap<>();
+        int[][] rowCodes = new int[rows.size()][];
+        for (int i = 0; i < rows.size(); i++) {
+            String[] values = getter.apply(rows.get(i));
+            if (values == null) {
+                continue;
+            }
+            rowCodes[i] = new int[values.length];
+            for (int j = 0; j < values.length; j++) {
+                rowCodes[i][j] = code(codes, values[j]);
+            }
+        }
+        writeDictionary(codes);
+        for (int[] list : rowCodes) {
+            if (list == null) {
+                writeVarint(0);
+                continue;
+            }
+            writeVarint(list.length + 1);
+            for (int c : list) {
+                writeVarint(c);
+            }
+        }
+    }
+
+    /**
+     * A {@code long[]} per row, each as delta-encoded ids.
+     */
+    <T> void longListColumn(List<T> rows, Function<T, long[]> getter) {
+        for (T row : rows) {
+            long[] values = getter.apply(row);
+            if (values == null) {
+                writeVarint(0);
+                continue;
+            }
+            writeVarint(values.length + 1);
+            long previous = 0;
+            for (long v : values) {
+                writeZigzag(v - previous);
+                previous = v;
+            }
+        }
+    }
+
+    /**
+     * Code 0 stands for {@code null}.
+     */
+    private static int code(Map<String, Integer> codes, String value) {
+        if (value == null) {
+            return 0;
+        }
+        return codes.computeIfAbsent(value, v -> codes.size() + 1);
+    }
+
+    private void writeDictionary(Map<String, Integer> codes) {
+        String[] values = new String[codes.size()];
+        codes.forEach((value, c) -> values[c - 1] = value);
+        writeVarint(values.length);
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1L);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeInt(int v) {
+        ensure(4);
+        buf[size++] = (byte) (v >>> 24);
+        buf[size++] = (byte) (v >>> 16);
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) v;
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private void writeZigzag(long v) {
+        writeVarint(zigzag(v));
+    }
+
+    private void writeVarint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buf[size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[size++] = (byte) v;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io.sustc.snapshot;
+
+import lombok.NoArgsConstructor;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A compact, columnar alternative to the row-oriented Fury {@code .ser} import files.
+ * <p>
+ * Layout: the {@link #MAGIC} int, the format version and the {@link RecordCodec#typeId()}, then blocks of
+ * at most the block size records, each as {@code rows, rawLength, compressedLength} and the LZ4-compressed
+ * columns, and finally a block of 0 rows. Every block decodes on its own into a batch of records, which is
+ * what the streaming import consumes, so reading needs one block in memory.
+ */
+@NoArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class ColumnarSnapshot {
+
+    /**
+     * "SCOL" in ASCII.
+     */
+    public static final int MAGIC = 0x53434F4C;
+
+    public static final int VERSION = 1;
+
+    public static final int DEFAULT_BLOCK_ROWS = 16_384;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    public static <T> void write(Path file, RecordCodec<T> codec, Iterator<T> records, int blockRows) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        ColumnWriter columns = new ColumnWriter();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(codec.typeId());
+            List<T> block = new ArrayList<>(blockRows);
+            while (records.hasNext()) {
+                block.add(records.next());
+                if (block.size() == blockRows) {
+                    writeBlock(out, codec, block, columns, compressor);
+                    block.clear();
+                }
+            }
+            if (!block.isEmpty()) {
+                writeBlock(out, codec, block, columns, compressor);
+            }
+            out.writeInt(0);
+        }
+    }
+
+    /**
+     * Opens the snapshot lazily: every {@code iterator()} call reads it again from the start,
+     * decoding one block at a time. The iterator closes the file at the end,
+     * or when closed early through {@link AutoCloseable}.
+     */
+    public static <T> Iterable<T> read(Path file, RecordCodec<T> codec) {
+        return () -> new BlockIterator<>(file, codec);
+    }
+
+    private static <T> void writeBlock(DataOutputStream out, RecordCodec<T> codec, List<T> block,
+                                       ColumnWriter columns, LZ4Compressor compressor) throws IOException {
+        columns.reset();
+        codec.encode(block, columns);
+        byte[] compressed = compressor.compress(columns.array(), 0, columns.size());
+        out.writeInt(block.size());
+        out.writeInt(columns.size());
+        out.writeInt(compressed.length);
+        out.write(compressed);
+    }
+
+    private static final class BlockIterator<T> implements Iterator<T>, AutoCloseable {
+
+        private final RecordCodec<T> codec;
+
+        private final DataInputStream in;
+
+        private final LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+
+        private Iterator<T> current = Collections.emptyIterator();
+
+        private boolean closed;
+
+        BlockIterator(Path file, RecordCodec<T> codec) {
+            this.codec = codec;
+            try {
+                this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+                int magic = in.readInt();
+                int version = in.readInt();
+                int type = in.readInt();
+                if (magic != MAGIC || version != VERSION || type != codec.typeId()) {
+                    in.close();
+                    throw new IllegalStateException(file + " is not a version " + VERSION + " snapshot of type " + codec.typeId());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (!nextBlock()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private boolean nextBlock() {
+            if (closed) {
+                return false;
+            }
+            try {
+                int rows = in.readInt();
+                if (rows == 0) {
+                    close();
+                    return false;
+                }
+                int rawLength = in.readInt();
+                byte[] compressed = new byte[in.readInt()];
+                in.readFully(compressed);
+                byte[] raw = decompressor.decompress(compressed, rawLength);
+                current = codec.decode(new ColumnReader(raw), rows).iterator();
+                return true;
+            } catch (EOFException e) {
+                close();
+                throw new IllegalStateException("Truncated snapshot", e);
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
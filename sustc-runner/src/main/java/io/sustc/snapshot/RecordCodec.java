@@ -0,0 +1,216 @@
+package io.sustc.snapshot;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column layout of one record type in a {@link ColumnarSnapshot} block.
+ */
+public interface RecordCodec<T> {
+
+    /**
+     * Tells a snapshot of one record type from another.
+     */
+    int typeId();
+
+    void encode(List<T> rows, ColumnWriter out);
+
+    List<T> decode(ColumnReader in, int rows);
+
+    RecordCodec<UserRecord> USERS = new RecordCodec<>() {
+        @Override
+        public int typeId() {
+            return 1;
+        }
+
+        @Override
+        public void encode(List<UserRecord> rows, ColumnWriter out) {
+            out.longColumn(rows, UserRecord::getAuthorId);
+            out.stringColumn(rows, UserRecord::getAuthorName);
+            out.dictionaryColumn(rows, UserRecord::getGender);
+            out.intColumn(rows, UserRecord::getAge);
+            out.intColumn(rows, UserRecord::getFollowers);
+            out.intColumn(rows, UserRecord::getFollowing);
+            out.longListColumn(rows, UserRecord::getFollowerUsers);
+            out.longListColumn(rows, UserRecord::getFollowingUsers);
+            out.stringColumn(rows, UserRecord::getPassword);
+            out.booleanColumn(rows, UserRecord::isDeleted);
+        }
+
+        @Override
+        public List<UserRecord> decode(ColumnReader in, int rows) {
+            long[] authorId = in.longColumn(rows);
+            String[] authorName = in.stringColumn(rows);
+            String[] gender = in.dictionaryColumn(rows);
+            int[] age = in.intColumn(rows);
+            int[] followers = in.intColumn(rows);
+            int[] following = in.intColumn(rows);
+            long[][] followerUsers = in.longListColumn(rows);
+            long[][] followingUsers = in.longListColumn(rows);
+            String[] password = in.stringColumn(rows);
+            boolean[] deleted = in.booleanColumn(rows);
+            List<UserRecord> records = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                records.add(UserRecord.builder()
+                        .authorId(authorId[i])
+                        .authorName(authorName[i])
+                        .gender(gender[i])
+                        .age(age[i])
+                        .followers(followers[i])
+                        .following(following[i])
+                        .followerUsers(followerUsers[i])
+                        .followingUsers(followingUsers[i])
+                        .password(password[i])
+                        .isDeleted(deleted[i])
+                        .build());
+            }
+            return records;
+        }
+    };
+
+    RecordCodec<RecipeRecord> RECIPES = new RecordCodec<>() {
+        @Override
+        public int typeId() {
+            return 2;
+        }
+
+        @Override
+        public void encode(List<RecipeRecord> rows, ColumnWriter out) {
+            out.longColumn(rows, RecipeRecord::getRecipeId);
+            out.stringColumn(rows, RecipeRecord::getName);
+            out.longColumn(rows, RecipeRecord::getAuthorId);
+            out.stringColumn(rows, RecipeRecord::getAuthorName);
+            out.dictionaryColumn(rows, RecipeRecord::getCookTime);
+            out.dictionaryColumn(rows, RecipeRecord::getPrepTime);
+            out.dictionaryColumn(rows, RecipeRecord::getTotalTime);
+            out.timestampColumn(rows, RecipeRecord::getDatePublished);
+            out.stringColumn(rows, RecipeRecord::getDescription);
+            out.dictionaryColumn(rows, RecipeRecord::getRecipeCategory);
+            out.dictionaryListColumn(rows, RecipeRecord::getRecipeIngredientParts);
+            out.nullableFloatColumn(rows, RecipeRecord::getAggregatedRating);
+            out.nullableIntColumn(rows, RecipeRecord::getReviewCount);
+            out.floatColumn(rows, RecipeRecord::getCalories);
+            out.floatColumn(rows, RecipeRecord::getFatContent);
+            out.floatColumn(rows, RecipeRecord::getSaturatedFatContent);
+            out.floatColumn(rows, RecipeRecord::getCholesterolContent);
+            out.floatColumn(rows, RecipeRecord::getSodiumContent);
+            out.floatColumn(rows, RecipeRecord::getCarbohydrateContent);
+            out.floatColumn(rows, RecipeRecord::getFiberContent);
+            out.floatColumn(rows, RecipeRecord::getSugarContent);
+            out.floatColumn(rows, RecipeRecord::getProteinContent);
+            out.intColumn(rows, RecipeRecord::getRecipeServings);
+            out.dictionaryColumn(rows, RecipeRecord::getRecipeYield);
+        }
+
+        @Override
+        public List<RecipeRecord> decode(ColumnReader in, int rows) {
+            long[] recipeId = in.longColumn(rows);
+            String[] name = in.stringColumn(rows);
+            long[] authorId = in.longColumn(rows);
+            String[] authorName = in.stringColumn(rows);
+            String[] cookTime = in.dictionaryColumn(rows);
+            String[] prepTime = in.dictionaryColumn(rows);
+            String[] totalTime = in.dictionaryColumn(rows);
+            Timestamp[] datePublished = in.timestampColumn(rows);
+            String[] description = in.stringColumn(rows);
+            String[] category = in.dictionaryColumn(rows);
+            String[][] ingredients = in.dictionaryListColumn(rows);
+            Float[] rating = in.nullableFloatColumn(rows);
+            Integer[] reviewCount = in.nullableIntColumn(rows);
+            float[] calories = in.floatColumn(rows);
+            float[] fat = in.floatColumn(rows);
+            float[] saturatedFat = in.floatColumn(rows);
+            float[] cholesterol = in.floatColumn(rows);
+            float[] sodium = in.floatColumn(rows);
+            float[] carbohydrate = in.floatColumn(rows);
+            float[] fiber = in.floatColumn(rows);
+            float[] sugar = in.floatColumn(rows);
+            float[] protein = in.floatColumn(rows);
+            int[] servings = in.intColumn(rows);
+            String[] yield = in.dictionaryColumn(rows);
+            List<RecipeRecord> records = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                records.add(RecipeRecord.builder()
+                        .RecipeId(recipeId[i])
+                        .name(name[i])
+                        .authorId(authorId[i])
+                        .authorName(authorName[i])
+                        .cookTime(cookTime[i])
+                        .prepTime(prepTime[i])
+                        .totalTime(totalTime[i])
+                        .datePublished(datePublished[i])
+                        .description(description[i])
+                        .recipeCategory(category[i])
+                        .recipeIngredientParts(ingredients[i])
+                        .aggregatedRating(rating[i])
+                        .reviewCount(reviewCount[i])
+                        .calories(calories[i])
+                        .fatContent(fat[i])
+                        .saturatedFatContent(saturatedFat[i])
+                        .cholesterolContent(cholesterol[i])
+                        .sodiumContent(sodium[i])
+                        .carbohydrateContent(carbohydrate[i])
+                        .fiberContent(fiber[i])
+                        .sugarContent(sugar[i])
+                        .proteinContent(protein[i])
+                        .recipeServings(servings[i])
+                        .recipeYield(yield[i])
+                        .build());
+            }
+            return records;
+        }
+    };
+
+    RecordCodec<ReviewRecord> REVIEWS = new RecordCodec<>() {
+        @Override
+        public int typeId() {
+            return 3;
+        }
+
+        @Override
+        public void encode(List<ReviewRecord> rows, ColumnWriter out) {
+            out.longColumn(rows, ReviewRecord::getReviewId);
+            out.longColumn(rows, ReviewRecord::getRecipeId);
+            out.longColumn(rows, ReviewRecord::getAuthorId);
+            out.stringColumn(rows, ReviewRecord::getAuthorName);
+            out.floatColumn(rows, ReviewRecord::getRating);
+            out.stringColumn(rows, ReviewRecord::getReview);
+            out.timestampColumn(rows, ReviewRecord::getDateSubmitted);
+            out.timestampColumn(rows, ReviewRecord::getDateModified);
+            out.longListColumn(rows, ReviewRecord::getLikes);
+        }
+
+        @Override
+        public List<ReviewRecord> decode(ColumnReader in, int rows) {
+            long[] reviewId = in.longColumn(rows);
+            long[] recipeId = in.longColumn(rows);
+            long[] authorId = in.longColumn(rows);
+            String[] authorName = in.stringColumn(rows);
+            float[] rating = in.floatColumn(rows);
+            String[] review = in.stringColumn(rows);
+            Timestamp[] dateSubmitted = in.timestampColumn(rows);
+            Timestamp[] dateModified = in.timestampColumn(rows);
+            long[][] likes = in.longListColumn(rows);
+            List<ReviewRecord> records = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                records.add(ReviewRecord.builder()
+                        .reviewId(reviewId[i])
+                        .recipeId(recipeId[i])
+                        .authorId(authorId[i])
+                        .authorName(authorName[i])
+                        .rating(rating[i])
+                        .review(review[i])
+                        .dateSubmitted(dateSubmitted[i])
+                        .dateModified(dateModified[i])
+                        .likes(likes[i])
+                        .build());
+            }
+            return records;
+        }
+    };
+}